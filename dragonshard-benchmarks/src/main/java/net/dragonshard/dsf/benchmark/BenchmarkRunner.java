@@ -0,0 +1,53 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * <p>依次以 1、4、16、64 个线程运行匹配的基准，吞吐量与延迟分布(含p99)写入 target/jmh-result-{线程数}t.json</p>
+ * <pre>
+ *   mvn -pl dragonshard-benchmarks -am package
+ *   java -jar dragonshard-benchmarks/target/benchmarks.jar [基准名称正则]
+ * </pre>
+ * <p>线程数可通过 -Ddsf.benchmark.threads=1,8 覆盖；Redis 基准默认启动内嵌 Redis，
+ * 指定 -Ddsf.benchmark.redis.host 时改为连接已有的 Redis</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class BenchmarkRunner {
+
+  private static final String DEFAULT_THREADS = "1,4,16,64";
+
+  public static void main(String[] args) throws Exception {
+    String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+    String[] threads = System.getProperty("dsf.benchmark.threads", DEFAULT_THREADS).split(",");
+    for (String thread : threads) {
+      int threadCount = Integer.parseInt(thread.trim());
+      Options options = new OptionsBuilder()
+        .include(include)
+        .threads(threadCount)
+        .resultFormat(ResultFormatType.JSON)
+        .result("target/jmh-result-" + threadCount + "t.json")
+        .build();
+
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark.id.generator;
+
+import java.text.DecimalFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.core.toolkit.DateUtil;
+import net.dragonshard.dsf.id.generator.redis.format.DateSequenceFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Redis ID 格式化基准: DateSequenceFormatter 与原先 DateUtil.formatDate + DecimalFormat 的对比
+ * <p>可加 -prof gc 查看每次操作的分配量</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateSequenceFormatterBenchmark {
+
+  private static final String DATE_FORMAT = "yyyyMMddHHmmssSSS";
+  private static final DateSequenceFormatter FORMATTER = new DateSequenceFormatter();
+
+  // DecimalFormat 不是线程安全的，原实现在多线程下共用同一个实例，这里按线程隔离以保证结果正确
+  private final DecimalFormat decimalFormat = new DecimalFormat("00000000");
+  private long sequence;
+
+  @Benchmark
+  public String dateSequenceFormatter() {
+    return FORMATTER.format(System.currentTimeMillis(), ++sequence, 8);
+  }
+
+  @Benchmark
+  public String legacy() {
+    long value = ++sequence;
+    String date = DateUtil.formatDate(new Date(), DATE_FORMAT);
+    String string = String.valueOf(value);
+    if (string.length() < 8) {
+      return date + decimalFormat.format(value);
+    }
+
+    return date + string.substring(string.length() - 8);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark.id.generator;
+
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.id.generator.configuration.property.LocalIdGeneratorProperties;
+import net.dragonshard.dsf.id.generator.local.LocalIdGenerator;
+import net.dragonshard.dsf.id.generator.local.impl.LocalIdGeneratorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LocalIdGeneratorImpl 基准
+ * <p>单机每毫秒最多 4096 个序列，高并发下的吞吐量上限约为 4M ops/s，超出部分体现为等待下一毫秒的延迟</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalIdGeneratorBenchmark {
+
+  @Param({"1", "16"})
+  public int stripes;
+
+  @Param({"100"})
+  public int batchCount;
+
+  private LocalIdGenerator localIdGenerator;
+
+  @Setup
+  public void setup() {
+    LocalIdGeneratorProperties localIdGeneratorProperties = new LocalIdGeneratorProperties();
+    localIdGeneratorProperties.setStripes(stripes);
+    localIdGenerator = new LocalIdGeneratorImpl(localIdGeneratorProperties);
+  }
+
+  @Benchmark
+  public String nextUniqueId() throws Exception {
+    return localIdGenerator.nextUniqueId();
+  }
+
+  @Benchmark
+  public long nextLongId() throws Exception {
+    return localIdGenerator.nextLongId();
+  }
+
+  @Benchmark
+  public String[] nextUniqueIds() throws Exception {
+    return localIdGenerator.nextUniqueIds(batchCount);
+  }
+
+  @Benchmark
+  public long[] nextLongIds() throws Exception {
+    return localIdGenerator.nextLongIds(batchCount);
+  }
+}
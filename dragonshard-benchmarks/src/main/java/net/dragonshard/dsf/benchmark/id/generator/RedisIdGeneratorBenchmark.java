@@ -0,0 +1,120 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark.id.generator;
+
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.id.generator.configuration.property.RedisIdGeneratorProperties;
+import net.dragonshard.dsf.id.generator.redis.RedisIdGenerator;
+import net.dragonshard.dsf.id.generator.redis.handler.RedisHandler;
+import net.dragonshard.dsf.id.generator.redis.handler.RedisHandlerImpl;
+import net.dragonshard.dsf.id.generator.redis.impl.RedisIdGeneratorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+/**
+ * RedisIdGeneratorImpl 基准
+ * <p>默认启动内嵌 Redis，指定 -Ddsf.benchmark.redis.host(-Ddsf.benchmark.redis.port) 时连接已有的 Redis</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisIdGeneratorBenchmark {
+
+  private static final int EMBEDDED_PORT = 16379;
+  private static final String NAME = "benchmark";
+  private static final String KEY = "order";
+
+  @Param({"false", "true"})
+  public boolean segment;
+
+  @Param({"100"})
+  public int batchCount;
+
+  private RedisServer redisServer;
+  private AnnotationConfigApplicationContext context;
+  private RedisIdGenerator redisIdGenerator;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String host = System.getProperty("dsf.benchmark.redis.host");
+    int port = Integer.getInteger("dsf.benchmark.redis.port", 6379);
+    if (host == null) {
+      host = "127.0.0.1";
+      port = EMBEDDED_PORT;
+      redisServer = RedisServer.builder().port(port).setting("save \"\"").build();
+      redisServer.start();
+    }
+
+    RedisIdGeneratorProperties redisIdGeneratorProperties = new RedisIdGeneratorProperties();
+    redisIdGeneratorProperties.getSegment().setEnabled(segment);
+
+    RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+    context = new AnnotationConfigApplicationContext();
+    context.registerBean(LettuceConnectionFactory.class,
+      () -> new LettuceConnectionFactory(configuration));
+    context.registerBean(StringRedisTemplate.class,
+      () -> new StringRedisTemplate(context.getBean(LettuceConnectionFactory.class)));
+    context.registerBean(RedisHandler.class, RedisHandlerImpl::new);
+    context.registerBean(RedisIdGenerator.class,
+      () -> new RedisIdGeneratorImpl(redisIdGeneratorProperties));
+    context.refresh();
+
+    redisIdGenerator = context.getBean(RedisIdGenerator.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    if (redisServer != null) {
+      redisServer.stop();
+    }
+  }
+
+  @Benchmark
+  public String nextUniqueId() throws Exception {
+    return redisIdGenerator.nextUniqueId(NAME, KEY, 1, 8);
+  }
+
+  @Benchmark
+  public String[] nextUniqueIds() throws Exception {
+    return redisIdGenerator.nextUniqueIds(NAME, KEY, 1, 8, batchCount);
+  }
+
+  @Benchmark
+  public String nextUniqueIdAsync() {
+    return redisIdGenerator.nextUniqueIdAsync(NAME, KEY, 1, 8).join();
+  }
+}
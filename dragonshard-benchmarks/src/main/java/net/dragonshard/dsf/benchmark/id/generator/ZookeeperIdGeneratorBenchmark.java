@@ -0,0 +1,98 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark.id.generator;
+
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.id.generator.configuration.property.ZookeeperIdGeneratorProperties;
+import net.dragonshard.dsf.id.generator.zookeeper.ZookeeperIdGenerator;
+import net.dragonshard.dsf.id.generator.zookeeper.handler.CuratorHandler;
+import net.dragonshard.dsf.id.generator.zookeeper.handler.CuratorHandlerImpl;
+import net.dragonshard.dsf.id.generator.zookeeper.impl.ZookeeperIdGeneratorImpl;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * ZookeeperIdGeneratorImpl 基准，基于 Curator 的 TestingServer(单节点，内存中运行)
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZookeeperIdGeneratorBenchmark {
+
+  private static final String NAME = "benchmark";
+  private static final String KEY = "order";
+
+  @Param({"false", "true"})
+  public boolean lease;
+
+  @Param({"100"})
+  public int batchCount;
+
+  private TestingServer testingServer;
+  private AnnotationConfigApplicationContext context;
+  private ZookeeperIdGenerator zookeeperIdGenerator;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    testingServer = new TestingServer(true);
+
+    ZookeeperIdGeneratorProperties zookeeperIdGeneratorProperties = new ZookeeperIdGeneratorProperties();
+    zookeeperIdGeneratorProperties.getCurator().setConnectString(testingServer.getConnectString());
+    zookeeperIdGeneratorProperties.getCurator().setRetryType("retryNTimes");
+    zookeeperIdGeneratorProperties.getLease().setEnabled(lease);
+
+    context = new AnnotationConfigApplicationContext();
+    context.registerBean(ZookeeperIdGeneratorProperties.class, () -> zookeeperIdGeneratorProperties);
+    context.registerBean(CuratorHandler.class, CuratorHandlerImpl::new);
+    context.registerBean(ZookeeperIdGenerator.class, ZookeeperIdGeneratorImpl::new);
+    context.refresh();
+
+    zookeeperIdGenerator = context.getBean(ZookeeperIdGenerator.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    context.close();
+    testingServer.close();
+  }
+
+  @Benchmark
+  public String nextSequenceId() throws Exception {
+    return zookeeperIdGenerator.nextSequenceId(NAME, KEY);
+  }
+
+  @Benchmark
+  public String[] nextSequenceIds() throws Exception {
+    return zookeeperIdGenerator.nextSequenceIds(NAME, KEY, batchCount);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.benchmark.limit;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.core.toolkit.KeyUtil;
+import net.dragonshard.dsf.limit.annotation.Limit;
+import net.dragonshard.dsf.limit.aop.LimitDelegate;
+import net.dragonshard.dsf.limit.aop.LimitInterceptor;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * LimitInterceptor 自身开销基准: 按方法缓存 @Limit 解析结果与原先每次反射、解析 SpEL 的对比
+ * <p>限流委托直接放行，只测量拦截器得到复合Key的开销</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LimitInterceptorBenchmark {
+
+  @Param({"constant", "spel"})
+  public String keyType;
+
+  private AnnotationConfigApplicationContext context;
+  private LimitInterceptor limitInterceptor;
+  private LimitDelegate limitDelegate;
+  private LimitProperties limitProperties;
+  private MethodInvocation invocation;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    context = new AnnotationConfigApplicationContext();
+    context.registerBean(LimitProperties.class, LimitProperties::new);
+    context.registerBean(LimitDelegate.class, PassThroughLimitDelegate::new);
+    context.registerBean(LimitInterceptor.class, LimitInterceptor::new);
+    context.refresh();
+
+    limitInterceptor = context.getBean(LimitInterceptor.class);
+    limitDelegate = context.getBean(LimitDelegate.class);
+    limitProperties = context.getBean(LimitProperties.class);
+
+    Method method = LimitedService.class
+      .getMethod("constant".equals(keyType) ? "constantKey" : "spelKey", String.class);
+    invocation = new BenchmarkInvocation(new LimitedService(), method, new Object[]{"10086"});
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Object cached() throws Throwable {
+    return limitInterceptor.invoke(invocation);
+  }
+
+  /**
+   * 原实现: 每次反射读取注解、发现参数名、解析 SpEL 并拼接复合Key
+   */
+  @Benchmark
+  public Object legacy() throws Throwable {
+    Method method = invocation.getMethod();
+    if (!method.isAnnotationPresent(Limit.class)) {
+      return invocation.proceed();
+    }
+
+    Limit limit = method.getAnnotation(Limit.class);
+    String spelKey;
+    try {
+      String[] parameterNames = new DefaultParameterNameDiscoverer().getParameterNames(method);
+      Object[] arguments = invocation.getArguments();
+      EvaluationContext context = new StandardEvaluationContext();
+      for (int i = 0; i < parameterNames.length; i++) {
+        context.setVariable(parameterNames[i], arguments[i]);
+      }
+      spelKey = new SpelExpressionParser().parseExpression(limit.key())
+        .getValue(context, String.class);
+    } catch (Exception e) {
+      spelKey = limit.key();
+    }
+
+    String compositeKey = KeyUtil
+      .getCompositeKey(limitProperties.getPrefix(), limit.name(), spelKey);
+    return limitDelegate.invoke(invocation, compositeKey, limit.limitPeriod(), limit.limitCount(),
+      limit.algorithm());
+  }
+
+  /**
+   * 直接放行的限流委托
+   */
+  private static class PassThroughLimitDelegate implements LimitDelegate {
+
+    @Override
+    public Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount,
+      LimitAlgorithmEnum algorithm) throws Throwable {
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation, List<LimitDimension> dimensions)
+      throws Throwable {
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object invokeConcurrent(MethodInvocation invocation, String key, int maxConcurrent,
+      long leaseMillis, long maxWaitMillis) throws Throwable {
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object invokeAdaptive(MethodInvocation invocation, String key, int minConcurrent,
+      int maxConcurrent) throws Throwable {
+      return invocation.proceed();
+    }
+  }
+
+  public static class LimitedService {
+
+    @Limit(name = "benchmark", key = "order", limitPeriod = 1, limitCount = 1000)
+    public String constantKey(String userId) {
+      return userId;
+    }
+
+    @Limit(name = "benchmark", key = "#userId", limitPeriod = 1, limitCount = 1000)
+    public String spelKey(String userId) {
+      return userId;
+    }
+  }
+
+  private static class BenchmarkInvocation implements MethodInvocation {
+
+    private final Object target;
+    private final Method method;
+    private final Object[] arguments;
+
+    BenchmarkInvocation(Object target, Method method, Object[] arguments) {
+      this.target = target;
+      this.method = method;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public Method getMethod() {
+      return method;
+    }
+
+    @Override
+    public Object[] getArguments() {
+      return arguments;
+    }
+
+    @Override
+    public Object proceed() {
+      return arguments[0];
+    }
+
+    @Override
+    public Object getThis() {
+      return target;
+    }
+
+    @Override
+    public AccessibleObject getStaticPart() {
+      return method;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.core.enums;
+
+/**
+ * 复合Key的 Redis Cluster hash tag 位置
+ * <p>Redis Cluster 只用第一对花括号内的内容计算槽位，同一 hash tag 的Key落在同一节点，
+ * 可以在一个 Lua 脚本中同时操作；tag 范围越大越容易形成热点槽位</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public enum KeyHashTagEnum {
+
+  /**
+   * 不加 hash tag: prefix:name:key，按完整Key分散
+   */
+  NONE,
+  /**
+   * prefix 作为 tag: {prefix}:name:key，所有Key在同一槽位，只适合小规模或需要任意组合多Key的场景
+   */
+  PREFIX,
+  /**
+   * name 作为 tag: prefix:{name}:key，同一资源的所有Key在同一槽位
+   */
+  NAME,
+  /**
+   * key 作为 tag: prefix:name:{key}，不同资源的相同key(如同一用户)在同一槽位
+   */
+  KEY
+}
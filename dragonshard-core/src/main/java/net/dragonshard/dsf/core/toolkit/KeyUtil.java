@@ -14,6 +14,7 @@
 package net.dragonshard.dsf.core.toolkit;
 
 import net.dragonshard.dsf.core.common.CoreConstants;
+import net.dragonshard.dsf.core.enums.KeyHashTagEnum;
 
 /**
  * key工具类
@@ -27,6 +28,37 @@ public class KeyUtil {
     return prefix + CoreConstants.REDIS_ID_SPLIT + name + CoreConstants.REDIS_ID_SPLIT + key;
   }
 
+  /**
+   * 按 hash tag 位置生成复合Key，用于 Redis Cluster
+   *
+   * @param prefix 前缀
+   * @param name 资源名字
+   * @param key 资源Key
+   * @param hashTag hash tag 位置，为null时同 {@link KeyHashTagEnum#NONE}
+   * @return String
+   */
+  public static String getCompositeKey(String prefix, String name, String key,
+    KeyHashTagEnum hashTag) {
+    if (hashTag == null) {
+      return getCompositeKey(prefix, name, key);
+    }
+
+    switch (hashTag) {
+      case PREFIX:
+        return getCompositeKey(getHashTag(prefix), name, key);
+      case NAME:
+        return getCompositeKey(prefix, getHashTag(name), key);
+      case KEY:
+        return getCompositeKey(prefix, name, getHashTag(key));
+      default:
+        return getCompositeKey(prefix, name, key);
+    }
+  }
+
+  public static String getHashTag(String segment) {
+    return "{" + segment + "}";
+  }
+
   public static String getCompositeWildcardKey(String prefix, String name) {
     return prefix + CoreConstants.REDIS_ID_SPLIT + name + "*";
   }
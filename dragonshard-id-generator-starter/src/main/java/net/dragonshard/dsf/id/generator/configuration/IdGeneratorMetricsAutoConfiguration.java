@@ -0,0 +1,50 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.dragonshard.dsf.id.generator.metrics.IdGeneratorMetrics;
+import net.dragonshard.dsf.id.generator.metrics.MicrometerIdGeneratorMetrics;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ID生成器指标配置
+ * <p>存在 MeterRegistry 时为各生成器注入 Micrometer 指标，否则生成器不计时</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "dragonshard.id-generator.metrics", name = "enabled", matchIfMissing = true)
+@AutoConfigureAfter(name = {
+  "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+  "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+  "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"})
+public class IdGeneratorMetricsAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  public IdGeneratorMetrics idGeneratorMetrics(MeterRegistry meterRegistry) {
+    return new MicrometerIdGeneratorMetrics(meterRegistry);
+  }
+
+}
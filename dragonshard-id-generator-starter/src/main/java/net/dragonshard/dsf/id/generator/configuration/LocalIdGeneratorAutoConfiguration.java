@@ -16,7 +16,14 @@ package net.dragonshard.dsf.id.generator.configuration;
 import net.dragonshard.dsf.id.generator.configuration.property.LocalIdGeneratorProperties;
 import net.dragonshard.dsf.id.generator.local.LocalIdGenerator;
 import net.dragonshard.dsf.id.generator.local.impl.LocalIdGeneratorImpl;
+import net.dragonshard.dsf.id.generator.local.worker.RedisWorkerIdAllocator;
+import net.dragonshard.dsf.id.generator.local.worker.WorkerIdAllocator;
+import net.dragonshard.dsf.id.generator.local.worker.ZookeeperWorkerIdAllocator;
+import net.dragonshard.dsf.id.generator.redis.handler.RedisHandler;
+import net.dragonshard.dsf.id.generator.zookeeper.handler.CuratorHandler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -42,8 +49,22 @@ public class LocalIdGeneratorAutoConfiguration {
   }
 
   @Bean
-  public LocalIdGenerator localIdGenerator() {
-    return new LocalIdGeneratorImpl(localIdGeneratorProperties);
+  public LocalIdGenerator localIdGenerator(ObjectProvider<WorkerIdAllocator> workerIdAllocator) {
+    return new LocalIdGeneratorImpl(localIdGeneratorProperties, workerIdAllocator.getIfAvailable());
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "dragonshard.id-generator.local.worker-id", name = "type", havingValue = "zookeeper")
+  public WorkerIdAllocator zookeeperWorkerIdAllocator(CuratorHandler curatorHandler) {
+    return new ZookeeperWorkerIdAllocator(localIdGeneratorProperties.getWorkerId(), curatorHandler);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "dragonshard.id-generator.local.worker-id", name = "type", havingValue = "redis")
+  public WorkerIdAllocator redisWorkerIdAllocator(RedisHandler redisHandler) {
+    return new RedisWorkerIdAllocator(localIdGeneratorProperties.getWorkerId(), redisHandler);
   }
 
 }
@@ -14,7 +14,9 @@
 package net.dragonshard.dsf.id.generator.configuration.property;
 
 import lombok.Data;
+import net.dragonshard.dsf.id.generator.configuration.property.local.WorkerIdProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
 
 /**
@@ -44,5 +46,29 @@ public class LocalIdGeneratorProperties {
    */
   private Long machine = 1L;
 
+  /**
+   * 序列号分段数，必须是2的幂(1~64)，默认 1
+   * <p>大于1时12位序列号按线程切分为多个分段，各核心在独立的计数器上自增以消除竞争；ID仍全局唯一且按毫秒大致有序，
+   * 但同一毫秒内不同线程生成的ID不再严格按生成顺序递增，且单个分段每毫秒可用序列为 4096 / 分段数</p>
+   */
+  private Integer stripes = 1;
+
+  /**
+   * 时钟回退容忍值(毫秒)，默认 0
+   * <p>回退不超过该值时沿用上次的逻辑时间戳继续生成，序列耗尽时进位到下一个逻辑毫秒</p>
+   */
+  private Long clockBackwardsToleranceMs = 0L;
+
+  /**
+   * 时钟回退最大等待值(毫秒)，默认 0
+   * <p>回退超过容忍值但不超过该值时挂起退避等待时钟追上，超过则抛出异常；两者都为0时与原先一样立即抛出异常</p>
+   */
+  private Long clockBackwardsMaxWaitMs = 0L;
+
+  /**
+   * 机器标识自动分配，配置后默认生成器使用租用到的机器标识，忽略 data-center 与 machine
+   */
+  @NestedConfigurationProperty
+  private WorkerIdProperties workerId = new WorkerIdProperties();
 
 }
@@ -14,7 +14,10 @@
 package net.dragonshard.dsf.id.generator.configuration.property;
 
 import lombok.Data;
+import net.dragonshard.dsf.core.enums.KeyHashTagEnum;
+import net.dragonshard.dsf.id.generator.configuration.property.redis.SegmentProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
 
 /**
@@ -39,10 +42,17 @@ public class RedisIdGeneratorProperties {
    */
   private String prefix = "DsfIdGenerator";
 
+  /**
+   * Redis Cluster 的 hash tag 位置, none/prefix/name/key, 默认 none
+   */
+  private KeyHashTagEnum hashTag = KeyHashTagEnum.NONE;
+
   /**
    * 长度，最大为8位，如果length > 8，则取8
    */
   private Integer length = 8;
 
+  @NestedConfigurationProperty
+  private SegmentProperties segment = new SegmentProperties();
 
 }
@@ -15,6 +15,7 @@ package net.dragonshard.dsf.id.generator.configuration.property;
 
 import lombok.Data;
 import net.dragonshard.dsf.id.generator.configuration.property.zk.CuratorProperties;
+import net.dragonshard.dsf.id.generator.configuration.property.zk.LeaseProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
@@ -44,4 +45,7 @@ public class ZookeeperIdGeneratorProperties {
   @NestedConfigurationProperty
   private CuratorProperties curator = new CuratorProperties();
 
+  @NestedConfigurationProperty
+  private LeaseProperties lease = new LeaseProperties();
+
 }
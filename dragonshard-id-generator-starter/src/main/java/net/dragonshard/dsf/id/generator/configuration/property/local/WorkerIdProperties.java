@@ -0,0 +1,52 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.configuration.property.local;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 机器标识自动分配配置
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.id-generator.local.worker-id")
+@Data
+public class WorkerIdProperties {
+
+  /**
+   * 分配方式: zookeeper 或 redis，不配置时使用 data-center 与 machine
+   * <p>zookeeper 依赖 Zookeeper ID 生成器的 Curator 客户端，redis 依赖 Redis ID 生成器的 Redis 连接</p>
+   */
+  private String type;
+
+  /**
+   * 命名空间，共用同一个 Zookeeper/Redis 的不同应用需配置不同的值，默认 default
+   */
+  private String namespace = "default";
+
+  /**
+   * 租约时长(毫秒)，超过该时长未续租视为租约丢失，默认 30000
+   */
+  private Long leaseTimeMs = 30000L;
+
+  /**
+   * 续租间隔(毫秒)，每次续租同时持久化已使用的时间戳，默认 10000
+   */
+  private Long renewIntervalMs = 10000L;
+
+}
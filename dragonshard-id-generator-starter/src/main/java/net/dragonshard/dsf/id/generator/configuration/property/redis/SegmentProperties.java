@@ -0,0 +1,48 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.configuration.property.redis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis ID 号段模式配置
+ *
+ * @author mayee
+ * @version v1.0
+ * @date 2019-07-08
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.id-generator.redis.segment")
+@Data
+public class SegmentProperties {
+
+  /**
+   * 是否开启号段模式，默认 false
+   * <p>开启后每次通过一次 INCRBY 租用 size 个序号在本地分配，ID的日期部分取本机时间</p>
+   */
+  private boolean enabled;
+
+  /**
+   * 每个号段包含的序号个数，默认 1000
+   */
+  private Integer size = 1000;
+
+  /**
+   * 当前号段消耗达到该百分比时异步预取下一个号段，默认 10
+   */
+  private Integer prefetchPercent = 10;
+
+}
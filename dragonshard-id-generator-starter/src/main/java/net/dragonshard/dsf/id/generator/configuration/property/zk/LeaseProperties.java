@@ -0,0 +1,48 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.configuration.property.zk;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Zookeeper ID 区间租用模式配置
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.id-generator.zookeeper.lease")
+@Data
+public class LeaseProperties {
+
+  /**
+   * 是否开启区间租用模式，默认 false
+   * <p>开启后节点数据保存long型的已分配最大值，每次通过版本号CAS租用 size 个序号在本地分配；
+   * 所有实例必须使用相同的模式</p>
+   */
+  private boolean enabled;
+
+  /**
+   * 每次租用的序号个数，默认 1000
+   */
+  private Integer size = 1000;
+
+  /**
+   * 当前区间消耗达到该百分比时异步预取下一个区间，默认 10
+   */
+  private Integer prefetchPercent = 10;
+
+}
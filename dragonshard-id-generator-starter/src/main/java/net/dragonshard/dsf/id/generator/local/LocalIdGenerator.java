@@ -13,6 +13,9 @@
 
 package net.dragonshard.dsf.id.generator.local;
 
+import java.nio.LongBuffer;
+import net.dragonshard.dsf.id.generator.local.format.IdEncodingEnum;
+
 /**
  * 本地ID生成器接口
  *
@@ -38,4 +41,60 @@ public interface LocalIdGenerator {
 
   String[] nextUniqueIds(int count) throws Exception;
 
+  /**
+   * 获取全局唯一ID（long型），算法同 {@link #nextUniqueId(long, long)}，无锁且不创建字符串对象，适用于高并发的热点路径
+   *
+   * @param dataCenterId 数据中心标识ID
+   * @param machineId 机器标识ID
+   * @return long
+   */
+  long nextLongId(long dataCenterId, long machineId) throws Exception;
+
+  long nextLongId() throws Exception;
+
+  /**
+   * 批量获取全局唯一ID（long型），一次原子操作预留一段连续的序列号（必要时跨越多个毫秒），适用于批量插入前预分配主键
+   *
+   * @param dataCenterId 数据中心标识ID
+   * @param machineId 机器标识ID
+   * @param count 批量条数
+   * @return long[]
+   */
+  long[] nextLongIds(long dataCenterId, long machineId, int count) throws Exception;
+
+  long[] nextLongIds(int count) throws Exception;
+
+  void nextLongIds(long[] ids, int offset, int count) throws Exception;
+
+  void nextLongIds(LongBuffer buffer, int count) throws Exception;
+
+  /**
+   * 获取全局唯一ID的定长紧凑编码（Base32 13位 / Base62 11位），字典序与数值顺序一致
+   *
+   * @param encoding 编码方式
+   * @return String
+   */
+  String nextEncodedId(IdEncodingEnum encoding) throws Exception;
+
+  String nextEncodedId(long dataCenterId, long machineId, IdEncodingEnum encoding)
+    throws Exception;
+
+  /**
+   * 批量获取定长紧凑编码的ID，全部写入同一个 char[] 后再切分
+   *
+   * @param encoding 编码方式
+   * @param count 批量条数
+   * @return String[]
+   */
+  String[] nextEncodedIds(IdEncodingEnum encoding, int count) throws Exception;
+
+  /**
+   * 把编码后的ID还原为 long 型
+   *
+   * @param encoding 编码方式
+   * @param encodedId 编码后的ID
+   * @return long
+   */
+  long decodeId(IdEncodingEnum encoding, String encodedId);
+
 }
@@ -0,0 +1,151 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.local.format;
+
+import java.util.Arrays;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+
+/**
+ * 雪花ID的定长紧凑编码
+ * <p>字母表按 ASCII 升序排列并左补 '0' 至固定宽度，编码后的字符串按字典序排序与原 long 值排序一致，
+ * 可直接用作 Redis Key、URL 或索引列；相比 19 位十进制字符串缩短约 30%~40%</p>
+ * <ul>
+ * <li>BASE32: Crockford Base32，13 位，不含 I L O U，解码时不区分大小写并兼容 I/L→1、O→0</li>
+ * <li>BASE62: 0-9A-Za-z，11 位，区分大小写</li>
+ * </ul>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public enum IdEncodingEnum {
+
+  BASE32("0123456789ABCDEFGHJKMNPQRSTVWXYZ", 13) {
+    @Override
+    void write(long id, char[] buffer, int offset) {
+      for (int i = offset + getWidth() - 1; i >= offset; i--) {
+        buffer[i] = alphabet[(int) (id & 31)];
+        id >>>= 5;
+      }
+    }
+  },
+
+  BASE62("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", 11) {
+    @Override
+    void write(long id, char[] buffer, int offset) {
+      for (int i = offset + getWidth() - 1; i >= offset; i--) {
+        long quotient = id / 62;
+        buffer[i] = alphabet[(int) (id - quotient * 62)];
+        id = quotient;
+      }
+    }
+  };
+
+  final char[] alphabet;
+  private final int width;
+  // 字符 -> 数值，非法字符为 -1
+  private final byte[] decodeTable = new byte[128];
+  private final ThreadLocal<char[]> bufferHolder;
+
+  IdEncodingEnum(String alphabet, int width) {
+    this.alphabet = alphabet.toCharArray();
+    this.width = width;
+    this.bufferHolder = ThreadLocal.withInitial(() -> new char[width]);
+
+    Arrays.fill(decodeTable, (byte) -1);
+    for (int i = 0; i < this.alphabet.length; i++) {
+      decodeTable[this.alphabet[i]] = (byte) i;
+    }
+
+    if (this.alphabet.length == 32) {
+      // Crockford: 不区分大小写，易混淆字符按规范映射
+      for (int i = 10; i < this.alphabet.length; i++) {
+        decodeTable[Character.toLowerCase(this.alphabet[i])] = (byte) i;
+      }
+      decodeTable['I'] = decodeTable['i'] = decodeTable['L'] = decodeTable['l'] = 1;
+      decodeTable['O'] = decodeTable['o'] = 0;
+    }
+  }
+
+  /**
+   * 编码后的固定长度
+   *
+   * @return int
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * 编码
+   *
+   * @param id ID，不能为负数
+   * @return String
+   */
+  public String encode(long id) {
+    char[] buffer = bufferHolder.get();
+    encode(id, buffer, 0);
+    return new String(buffer, 0, width);
+  }
+
+  /**
+   * 编码并写入 buffer[offset, offset + width)，不创建对象
+   *
+   * @param id ID，不能为负数
+   * @param buffer 目标数组
+   * @param offset 写入位置
+   * @return 写入后的位置
+   */
+  public int encode(long id, char[] buffer, int offset) {
+    if (id < 0) {
+      throw ExceptionUtils.get(String.format("Id can't be less than 0, id: %d", id));
+    }
+
+    write(id, buffer, offset);
+    return offset + width;
+  }
+
+  /**
+   * 解码
+   *
+   * @param text 编码后的字符串
+   * @return long
+   */
+  public long decode(CharSequence text) {
+    if (text == null || text.length() != width) {
+      throw ExceptionUtils
+        .get(String.format("Encoded id must be %d characters, text: %s", width, text));
+    }
+
+    int radix = alphabet.length;
+    long limit = (Long.MAX_VALUE - (radix - 1)) / radix;
+    long id = 0L;
+    for (int i = 0; i < width; i++) {
+      char c = text.charAt(i);
+      int digit = c < decodeTable.length ? decodeTable[c] : -1;
+      if (digit < 0) {
+        throw ExceptionUtils
+          .get(String.format("Illegal %s character '%s', text: %s", name(), c, text));
+      }
+
+      if (id > limit && id > (Long.MAX_VALUE - digit) / radix) {
+        throw ExceptionUtils.get(String.format("Encoded id out of range, text: %s", text));
+      }
+      id = id * radix + digit;
+    }
+
+    return id;
+  }
+
+  abstract void write(long id, char[] buffer, int offset);
+}
@@ -13,11 +13,20 @@
 
 package net.dragonshard.dsf.id.generator.local.impl;
 
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
 import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
 import net.dragonshard.dsf.id.generator.configuration.property.LocalIdGeneratorProperties;
 import net.dragonshard.dsf.id.generator.local.LocalIdGenerator;
+import net.dragonshard.dsf.id.generator.local.format.IdEncodingEnum;
+import net.dragonshard.dsf.id.generator.local.worker.WorkerIdAllocator;
+import net.dragonshard.dsf.id.generator.metrics.IdGeneratorMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * 自增ID实现（local）
@@ -33,40 +42,230 @@ public class LocalIdGeneratorImpl implements LocalIdGenerator {
   private static final long DEFAULT_START_TIMESTAMP = 1483200000000L;
   private volatile Map<String, SnowflakeIdGenerator> idGeneratorMap = new ConcurrentHashMap<String, SnowflakeIdGenerator>();
   private LocalIdGeneratorProperties localIdGeneratorProperties;
+  // 默认数据中心与机器标识对应的生成器，避免热点路径上每次拼接key查找map
+  private volatile SnowflakeIdGenerator defaultIdGenerator;
+  // 机器标识分配器，为null时使用配置的数据中心与机器标识
+  private final WorkerIdAllocator workerIdAllocator;
+  private IdGeneratorMetrics idGeneratorMetrics = IdGeneratorMetrics.NOOP;
 
   public LocalIdGeneratorImpl(LocalIdGeneratorProperties localIdGeneratorProperties) {
+    this(localIdGeneratorProperties, null);
+  }
+
+  public LocalIdGeneratorImpl(LocalIdGeneratorProperties localIdGeneratorProperties,
+    WorkerIdAllocator workerIdAllocator) {
     this.localIdGeneratorProperties = localIdGeneratorProperties;
+    this.workerIdAllocator = workerIdAllocator;
+    if (workerIdAllocator != null) {
+      onLeased(workerIdAllocator.getDataCenterId(), workerIdAllocator.getMachineId(),
+        workerIdAllocator.getLastTimestamp());
+      workerIdAllocator.setLeaseListener(this::onLeased);
+    }
+  }
+
+  /**
+   * 租用到槽位后切换默认生成器
+   * <p>发布之前跳过该槽位上一个持有者可能用过的时间戳，并由分配器续租时持久化本生成器已使用的时间戳</p>
+   */
+  private void onLeased(long dataCenterId, long machineId, long lastTimestamp) {
+    SnowflakeIdGenerator idGenerator = getIdGenerator(dataCenterId, machineId, lastTimestamp);
+    // 重新租用到曾经持有过的槽位时生成器已存在，同样需要推进
+    idGenerator.advanceTo(lastTimestamp);
+    workerIdAllocator.setTimestampSupplier(idGenerator::getLastTimestamp);
+    defaultIdGenerator = idGenerator;
   }
 
   @Override
   public String nextUniqueId() throws Exception {
-    return nextUniqueId(localIdGeneratorProperties.getDataCenter(),
-      localIdGeneratorProperties.getMachine());
+    long start = startTime();
+    String id = getDefaultIdGenerator().nextId();
+    recordLatency(IdGeneratorMetrics.OPERATION_SINGLE, start);
+    return id;
   }
 
   @Override
   public String nextUniqueId(long dataCenterId, long machineId) throws Exception {
-    return getIdGenerator(dataCenterId, machineId).nextId();
+    long start = startTime();
+    String id = getIdGenerator(dataCenterId, machineId).nextId();
+    recordLatency(IdGeneratorMetrics.OPERATION_SINGLE, start);
+    return id;
   }
 
   @Override
   public String[] nextUniqueIds(int count) throws Exception {
-    return nextUniqueIds(localIdGeneratorProperties.getDataCenter(),
-      localIdGeneratorProperties.getMachine(), count);
+    long start = startTime();
+    String[] ids = getDefaultIdGenerator().nextIds(count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+    return ids;
   }
 
   @Override
   public String[] nextUniqueIds(long dataCenterId, long machineId, int count) throws Exception {
-    return getIdGenerator(dataCenterId, machineId).nextIds(count);
+    long start = startTime();
+    String[] ids = getIdGenerator(dataCenterId, machineId).nextIds(count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+    return ids;
+  }
+
+  @Override
+  public long nextLongId() throws Exception {
+    long start = startTime();
+    long id = getDefaultIdGenerator().nextLongId();
+    recordLatency(IdGeneratorMetrics.OPERATION_SINGLE, start);
+    return id;
+  }
+
+  @Override
+  public long nextLongId(long dataCenterId, long machineId) throws Exception {
+    long start = startTime();
+    long id = getIdGenerator(dataCenterId, machineId).nextLongId();
+    recordLatency(IdGeneratorMetrics.OPERATION_SINGLE, start);
+    return id;
+  }
+
+  @Override
+  public long[] nextLongIds(long dataCenterId, long machineId, int count) throws Exception {
+    long start = startTime();
+    long[] ids = getIdGenerator(dataCenterId, machineId).nextLongIds(count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+    return ids;
+  }
+
+  @Override
+  public long[] nextLongIds(int count) throws Exception {
+    long start = startTime();
+    long[] ids = getDefaultIdGenerator().nextLongIds(count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+    return ids;
+  }
+
+  @Override
+  public void nextLongIds(long[] ids, int offset, int count) throws Exception {
+    long start = startTime();
+    getDefaultIdGenerator().nextLongIds(ids, offset, count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+  }
+
+  @Override
+  public void nextLongIds(LongBuffer buffer, int count) throws Exception {
+    long start = startTime();
+    getDefaultIdGenerator().nextLongIds(buffer, count);
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
+  }
+
+  @Override
+  public String nextEncodedId(IdEncodingEnum encoding) throws Exception {
+    return encoding.encode(nextLongId());
+  }
+
+  @Override
+  public String nextEncodedId(long dataCenterId, long machineId, IdEncodingEnum encoding)
+    throws Exception {
+    return encoding.encode(nextLongId(dataCenterId, machineId));
+  }
+
+  @Override
+  public String[] nextEncodedIds(IdEncodingEnum encoding, int count) throws Exception {
+    long[] ids = nextLongIds(count);
+    int width = encoding.getWidth();
+    char[] buffer = new char[width * ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      encoding.encode(ids[i], buffer, i * width);
+    }
+
+    String[] encodedIds = new String[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      encodedIds[i] = new String(buffer, i * width, width);
+    }
+
+    return encodedIds;
+  }
+
+  @Override
+  public long decodeId(IdEncodingEnum encoding, String encodedId) {
+    return encoding.decode(encodedId);
+  }
+
+  /**
+   * 已创建的雪花算法生成器，用于读取时钟回退、序列耗尽等计数器
+   *
+   * @return Collection
+   */
+  public Collection<SnowflakeIdGenerator> getIdGenerators() {
+    return Collections.unmodifiableCollection(idGeneratorMap.values());
+  }
+
+  /**
+   * 注入指标实现，并绑定各生成器的序列耗尽与时钟回退计数
+   *
+   * @param idGeneratorMetrics 指标
+   */
+  @Autowired(required = false)
+  public void setIdGeneratorMetrics(IdGeneratorMetrics idGeneratorMetrics) {
+    this.idGeneratorMetrics = idGeneratorMetrics;
+    bindCounter(idGeneratorMetrics, "sequence.exhausted",
+      SnowflakeIdGenerator::getSequenceExhaustedCount);
+    bindCounter(idGeneratorMetrics, "clock.backwards",
+      SnowflakeIdGenerator::getClockBackwardsAbsorbedCount, "action", "absorbed");
+    bindCounter(idGeneratorMetrics, "clock.backwards",
+      SnowflakeIdGenerator::getClockBackwardsWaitedCount, "action", "waited");
+    bindCounter(idGeneratorMetrics, "clock.backwards",
+      SnowflakeIdGenerator::getClockBackwardsRefusedCount, "action", "refused");
+  }
+
+  private void bindCounter(IdGeneratorMetrics idGeneratorMetrics, String name,
+    ToLongFunction<SnowflakeIdGenerator> counter, String... tags) {
+    String[] backendTags = new String[tags.length + 2];
+    backendTags[0] = "backend";
+    backendTags[1] = IdGeneratorMetrics.BACKEND_LOCAL;
+    System.arraycopy(tags, 0, backendTags, 2, tags.length);
+    idGeneratorMetrics.bindCounter(name,
+      () -> idGeneratorMap.values().stream().mapToLong(counter).sum(), backendTags);
+  }
+
+  private long startTime() {
+    return idGeneratorMetrics.isEnabled() ? System.nanoTime() : 0L;
+  }
+
+  private void recordLatency(String operation, long start) {
+    if (start != 0L) {
+      idGeneratorMetrics
+        .recordLatency(IdGeneratorMetrics.BACKEND_LOCAL, operation, System.nanoTime() - start);
+    }
+  }
+
+  private SnowflakeIdGenerator getDefaultIdGenerator() {
+    if (workerIdAllocator != null && !workerIdAllocator.isLeased()) {
+      throw ExceptionUtils.get(String
+        .format("Worker id lease of data center %d machine %d is lost, refusing to generate id",
+          workerIdAllocator.getDataCenterId(), workerIdAllocator.getMachineId()));
+    }
+
+    SnowflakeIdGenerator idGenerator = defaultIdGenerator;
+    if (idGenerator == null) {
+      idGenerator = getIdGenerator(localIdGeneratorProperties.getDataCenter(),
+        localIdGeneratorProperties.getMachine());
+      defaultIdGenerator = idGenerator;
+    }
+
+    return idGenerator;
   }
 
   private SnowflakeIdGenerator getIdGenerator(long dataCenterId, long machineId) {
+    return getIdGenerator(dataCenterId, machineId, 0L);
+  }
+
+  private SnowflakeIdGenerator getIdGenerator(long dataCenterId, long machineId,
+    long lastTimestamp) {
     String key = dataCenterId + "-" + machineId;
 
     SnowflakeIdGenerator idGenerator = idGeneratorMap.get(key);
     if (idGenerator == null) {
       SnowflakeIdGenerator newIdGnerator = new SnowflakeIdGenerator(DEFAULT_START_TIMESTAMP,
-        dataCenterId, machineId);
+        dataCenterId, machineId, localIdGeneratorProperties.getStripes(),
+        localIdGeneratorProperties.getClockBackwardsToleranceMs(),
+        localIdGeneratorProperties.getClockBackwardsMaxWaitMs());
+      newIdGnerator.advanceTo(lastTimestamp);
       idGenerator = idGeneratorMap.putIfAbsent(key, newIdGnerator);
       if (idGenerator == null) {
         idGenerator = newIdGnerator;
@@ -13,6 +13,11 @@
 
 package net.dragonshard.dsf.id.generator.local.impl;
 
+import java.nio.LongBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
 
 /**
@@ -55,14 +60,55 @@ public class SnowflakeIdGenerator {
    */
   private final static int MAX_BATCH_COUNT = 100_000;
 
+  /**
+   * 最大分段数(64)，每个分段每毫秒至少可分配 4096 / 64 = 64 个序列
+   */
+  public final static int MAX_STRIPES = 64;
+
+  /**
+   * 等待下一毫秒时每次挂起的时长(100微秒)，替代忙等
+   */
+  private final static long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /**
+   * 等待时钟追上时退避的最大间隔(毫秒)
+   */
+  private final static long MAX_BACKOFF_MILLIS = 100L;
+
   /**
    * 变量部分
    */
-  private long dataCenterId; // 数据中心标识ID(0~31)
-  private long machineId; // 机器标识ID(0~31)
-  private long sequence = 0L; // 毫秒内序列(0~4095)
-  private long startTimestamp = -1L; // 开始时间戳
-  private long lastTimestamp = -1L; // 上次生成ID的时间戳
+  private final long dataCenterId; // 数据中心标识ID(0~31)
+  private final long machineId; // 机器标识ID(0~31)
+  private final long workerBits; // 数据中心标识ID与机器标识ID移位后的组合部分
+  private final long startTimestamp; // 开始时间戳
+  private final int stripeMask; // 分段掩码(分段数 - 1)
+  private final long stripeSequenceBits; // 分段内序列号占用的位数(12 - log2(分段数))
+  private final long maxStripeSequence; // 分段内的最大序列(掩码)
+  private final long clockBackwardsToleranceMs; // 可直接沿用逻辑时间戳吸收的时钟回退(毫秒)
+  private final long clockBackwardsMaxWaitMs; // 可等待时钟追上的最大时钟回退(毫秒)
+
+  /**
+   * 分段的状态字: 高位为上次生成ID的相对时间戳(当前时间 - 开始时间戳)，低位为该分段的毫秒内序列
+   * <p>时间戳与序列号在同一个 AtomicLong 中通过 CAS 一次性更新，替代 synchronized</p>
+   * <p>12位序列号被按高位切分给各个分段，线程按ID映射到固定分段，各分段在独立的缓存行上自增，互不竞争；
+   * 分段数为1时与标准雪花算法完全一致</p>
+   */
+  private final PaddedAtomicLong[] stripes;
+
+  /**
+   * 批量预留所到达的最大相对时间戳
+   * <p>批量获取时可能会预支未来若干毫秒的序列，状态字的时间戳在此范围内领先于系统时钟属于正常情况，不视为时钟回退</p>
+   */
+  private final AtomicLong reservedTimestamp = new AtomicLong(0L);
+
+  /**
+   * 计数器部分
+   */
+  private final LongAdder clockBackwardsAbsorbedCount = new LongAdder(); // 沿用逻辑时间戳吸收时钟回退的次数
+  private final LongAdder clockBackwardsWaitedCount = new LongAdder(); // 等待时钟追上的次数
+  private final LongAdder clockBackwardsRefusedCount = new LongAdder(); // 时钟回退过大而拒绝生成的次数
+  private final LongAdder sequenceExhaustedCount = new LongAdder(); // 毫秒内序列耗尽而等待下一毫秒的次数
 
   /**
    * 构造方法
@@ -72,6 +118,34 @@ public class SnowflakeIdGenerator {
    * @param machineId 机器标识ID(0~31)
    */
   protected SnowflakeIdGenerator(long startTimestamp, long dataCenterId, long machineId) {
+    this(startTimestamp, dataCenterId, machineId, 1);
+  }
+
+  /**
+   * 构造方法
+   *
+   * @param startTimestamp 开始时间戳，不可大于当前时间
+   * @param dataCenterId 数据中心标识ID(0~31)
+   * @param machineId 机器标识ID(0~31)
+   * @param stripes 序列号分段数，必须是2的幂(1~64)
+   */
+  protected SnowflakeIdGenerator(long startTimestamp, long dataCenterId, long machineId,
+    int stripes) {
+    this(startTimestamp, dataCenterId, machineId, stripes, 0L, 0L);
+  }
+
+  /**
+   * 构造方法
+   *
+   * @param startTimestamp 开始时间戳，不可大于当前时间
+   * @param dataCenterId 数据中心标识ID(0~31)
+   * @param machineId 机器标识ID(0~31)
+   * @param stripes 序列号分段数，必须是2的幂(1~64)
+   * @param clockBackwardsToleranceMs 时钟回退不超过该值(毫秒)时，沿用上次的逻辑时间戳继续生成
+   * @param clockBackwardsMaxWaitMs 时钟回退超过容忍值但不超过该值(毫秒)时，挂起退避等待时钟追上，超过则抛出异常
+   */
+  protected SnowflakeIdGenerator(long startTimestamp, long dataCenterId, long machineId,
+    int stripes, long clockBackwardsToleranceMs, long clockBackwardsMaxWaitMs) {
     long currentTimestamp = getCurrentTimestamp();
     if (startTimestamp > currentTimestamp) {
       throw ExceptionUtils
@@ -88,11 +162,32 @@ public class SnowflakeIdGenerator {
         .get(String.format("Machine id can't be greater than %d or less than 0", MAX_MACHINE_ID));
     }
 
+    if (stripes <= 0 || stripes > MAX_STRIPES || (stripes & (stripes - 1)) != 0) {
+      throw ExceptionUtils.get(String
+        .format("Stripes must be a power of 2 and can't be greater than %d or less than 1",
+          MAX_STRIPES));
+    }
+
+    if (clockBackwardsToleranceMs < 0 || clockBackwardsMaxWaitMs < 0) {
+      throw ExceptionUtils.get("Clock backwards tolerance and max wait can't be less than 0");
+    }
+
     // 当初始时间跟当前时间相等，减1毫秒，否则会导致溢出
     this.startTimestamp = (startTimestamp == currentTimestamp ? startTimestamp - 1
       : startTimestamp);
     this.dataCenterId = dataCenterId;
     this.machineId = machineId;
+    this.workerBits = (dataCenterId << DATA_CENTER_ID_SHIFT) // 数据中心标识ID部分
+      | (machineId << MACHINE_ID_SHIFT); // 机器标识ID部分
+    this.stripeMask = stripes - 1;
+    this.stripeSequenceBits = SEQUENCE_BITS - Integer.numberOfTrailingZeros(stripes);
+    this.maxStripeSequence = -1L ^ (-1L << stripeSequenceBits);
+    this.stripes = new PaddedAtomicLong[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new PaddedAtomicLong();
+    }
+    this.clockBackwardsToleranceMs = clockBackwardsToleranceMs;
+    this.clockBackwardsMaxWaitMs = clockBackwardsMaxWaitMs;
   }
 
   /**
@@ -102,17 +197,198 @@ public class SnowflakeIdGenerator {
    * @return String[]
    */
   protected String[] nextIds(int count) {
+    validateCount(count);
+
+    int stripe = currentStripe();
+    long first = reserve(stripe, count);
+    String[] ids = new String[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = String.valueOf(toId(stripe, first + i));
+    }
+
+    return ids;
+  }
+
+  /**
+   * 批量获取下一组long型ID
+   *
+   * @param count 批量条数
+   * @return long[]
+   */
+  public long[] nextLongIds(int count) {
+    validateCount(count);
+
+    long[] ids = new long[count];
+    nextLongIds(ids, 0, count);
+
+    return ids;
+  }
+
+  /**
+   * 批量获取下一组long型ID，一次CAS预留连续的序列号(必要时跨越多个毫秒)，并填充到数组中
+   *
+   * @param ids 目标数组
+   * @param offset 数组起始下标
+   * @param count 批量条数
+   */
+  public void nextLongIds(long[] ids, int offset, int count) {
+    validateCount(count);
+    if (offset < 0 || offset > ids.length - count) {
+      throw ExceptionUtils.get(String
+        .format("Offset %d and count %d out of bounds for length %d", offset, count,
+          ids.length));
+    }
+
+    int stripe = currentStripe();
+    long first = reserve(stripe, count);
+    for (int i = 0; i < count; i++) {
+      ids[offset + i] = toId(stripe, first + i);
+    }
+  }
+
+  /**
+   * 批量获取下一组long型ID，一次CAS预留连续的序列号(必要时跨越多个毫秒)，从缓冲区当前位置开始写入
+   *
+   * @param buffer 目标缓冲区
+   * @param count 批量条数
+   */
+  public void nextLongIds(LongBuffer buffer, int count) {
+    validateCount(count);
+    if (buffer.remaining() < count) {
+      throw ExceptionUtils.get(String
+        .format("Buffer remaining %d is less than count %d", buffer.remaining(), count));
+    }
+
+    int stripe = currentStripe();
+    long first = reserve(stripe, count);
+    for (int i = 0; i < count; i++) {
+      buffer.put(toId(stripe, first + i));
+    }
+  }
+
+  /**
+   * 在指定分段预留连续count个序列号
+   * <p>状态字的高位时间戳与低位序列号整体可以看作一个线性递增的计数器，序列号溢出时自然进位到下一毫秒，
+   * 因此预留只需一次CAS把状态字推进count位；预支未来毫秒的部分记录在 reservedTimestamp 中</p>
+   *
+   * @param stripe 分段下标
+   * @param count 批量条数
+   * @return 第一个序列号对应的状态字
+   */
+  private long reserve(int stripe, int count) {
+    AtomicLong state = stripes[stripe];
+    for (; ; ) {
+      long current = state.get();
+      long lastTimestamp = current >>> stripeSequenceBits;
+      long currentTimestamp = adjustTimestamp(lastTimestamp,
+        getCurrentTimestamp() - startTimestamp);
+
+      long first = currentTimestamp > lastTimestamp ? currentTimestamp << stripeSequenceBits
+        : current + 1;
+      long last = first + count - 1;
+      long lastReservedTimestamp = last >>> stripeSequenceBits;
+      // 先登记预支的时间戳，再推进状态字，保证其他线程读到新状态时不会误判为时钟回退
+      if (lastReservedTimestamp > currentTimestamp) {
+        reservedTimestamp.accumulateAndGet(lastReservedTimestamp, Math::max);
+      }
+
+      if (state.compareAndSet(current, last)) {
+        return first;
+      }
+    }
+  }
+
+  /**
+   * 校验批量条数
+   *
+   * @param count 批量条数
+   */
+  private void validateCount(int count) {
     if (count <= 0 || count > MAX_BATCH_COUNT) {
       throw ExceptionUtils
         .get(String.format("Count can't be greater than %d or less than 0", MAX_BATCH_COUNT));
     }
+  }
 
-    String[] ids = new String[count];
-    for (int i = 0; i < count; i++) {
-      ids[i] = nextId();
+  /**
+   * 处理时钟回退，返回本次应使用的相对时间戳
+   * <ul>
+   * <li>状态字领先是批量预支造成的，或回退不超过容忍值: 沿用上次的逻辑时间戳</li>
+   * <li>回退超过容忍值但不超过最大等待值: 挂起退避，直到时钟追上</li>
+   * <li>回退超过最大等待值: 抛出异常</li>
+   * </ul>
+   *
+   * @param lastTimestamp 上次生成ID的相对时间戳
+   * @param currentTimestamp 当前相对时间戳
+   * @return long
+   */
+  private long adjustTimestamp(long lastTimestamp, long currentTimestamp) {
+    long backwards = lastTimestamp - currentTimestamp;
+    if (backwards <= 0 || lastTimestamp <= reservedTimestamp.get()) {
+      return Math.max(lastTimestamp, currentTimestamp);
     }
 
-    return ids;
+    if (backwards <= clockBackwardsToleranceMs) {
+      clockBackwardsAbsorbedCount.increment();
+      return lastTimestamp;
+    }
+
+    if (backwards <= clockBackwardsMaxWaitMs) {
+      clockBackwardsWaitedCount.increment();
+      return waitForTimestamp(lastTimestamp, currentTimestamp);
+    }
+
+    // 如果当前时间小于上一次ID生成的时间戳, 说明系统时钟回退过这个时候应当抛出异常
+    clockBackwardsRefusedCount.increment();
+    throw new RuntimeException(String
+      .format("Clock moved backwards. Refusing to generate id for %d milliseconds", backwards));
+  }
+
+  /**
+   * 挂起并指数退避，直到时钟追上上次生成ID的时间戳；等待总时长超过最大等待值则抛出异常
+   *
+   * @param lastTimestamp 上次生成ID的相对时间戳
+   * @param currentTimestamp 当前相对时间戳
+   * @return long
+   */
+  private long waitForTimestamp(long lastTimestamp, long currentTimestamp) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(clockBackwardsMaxWaitMs);
+    long backoffMillis = 1L;
+    while (currentTimestamp < lastTimestamp) {
+      if (System.nanoTime() - deadline >= 0) {
+        clockBackwardsRefusedCount.increment();
+        throw new RuntimeException(String
+          .format("Clock moved backwards. Refusing to generate id for %d milliseconds",
+            lastTimestamp - currentTimestamp));
+      }
+
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS
+        .toNanos(Math.min(backoffMillis, lastTimestamp - currentTimestamp)));
+      backoffMillis = Math.min(backoffMillis << 1, MAX_BACKOFF_MILLIS);
+      currentTimestamp = getCurrentTimestamp() - startTimestamp;
+    }
+
+    return currentTimestamp;
+  }
+
+  /**
+   * 序列溢出时是否可以直接进位到下一个逻辑毫秒(预支不超过时钟回退容忍值)；可以则先登记预支的时间戳
+   *
+   * @param nextTimestamp 进位后的相对时间戳
+   * @param currentTimestamp 当前相对时间戳
+   * @return boolean
+   */
+  private boolean tryBorrowTimestamp(long nextTimestamp, long currentTimestamp) {
+    if (nextTimestamp <= reservedTimestamp.get()) {
+      return true;
+    }
+
+    if (nextTimestamp - currentTimestamp > clockBackwardsToleranceMs) {
+      return false;
+    }
+
+    reservedTimestamp.accumulateAndGet(nextTimestamp, Math::max);
+    return true;
   }
 
   /**
@@ -120,44 +396,72 @@ public class SnowflakeIdGenerator {
    *
    * @return String
    */
-  public synchronized String nextId() {
-    long currentTimestamp = getCurrentTimestamp();
+  public String nextId() {
+    return String.valueOf(nextLongId());
+  }
 
-    // 如果当前时间小于上一次ID生成的时间戳, 说明系统时钟回退过这个时候应当抛出异常
-    if (currentTimestamp < lastTimestamp) {
-      throw new RuntimeException(String
-        .format("Clock moved backwards. Refusing to generate id for %d milliseconds",
-          lastTimestamp - currentTimestamp));
-    }
-
-    // 如果是同一时间生成的, 则进行毫秒内序列自增
-    if (lastTimestamp == currentTimestamp) {
-      // 相同毫秒内，序列号自增
-      sequence = (sequence + 1) & MAX_SEQUENCE;
-      // 同一毫秒的序列数已经达到最大，则毫秒内序列溢出
-      if (sequence == 0) {
-        // 阻塞到下一个毫秒，获得新的时间戳
-        currentTimestamp = getNextTimestamp(lastTimestamp);
+  /**
+   * 获得下一个long型ID (该方法是线程安全的，无锁)
+   *
+   * @return long
+   */
+  public long nextLongId() {
+    int stripe = currentStripe();
+    AtomicLong state = stripes[stripe];
+    for (; ; ) {
+      long current = state.get();
+      long lastTimestamp = current >>> stripeSequenceBits;
+      long systemTimestamp = getCurrentTimestamp() - startTimestamp;
+      long currentTimestamp = adjustTimestamp(lastTimestamp, systemTimestamp);
+
+      long next;
+      if (lastTimestamp == currentTimestamp) {
+        // 同一毫秒(或逻辑毫秒)的序列数已经达到最大，则毫秒内序列溢出
+        if ((current & maxStripeSequence) == maxStripeSequence
+          && !tryBorrowTimestamp(lastTimestamp + 1, systemTimestamp)) {
+          // 挂起到下一个毫秒，重新竞争
+          sequenceExhaustedCount.increment();
+          getNextTimestamp(lastTimestamp + startTimestamp);
+          continue;
+        }
+        // 相同毫秒内，序列号自增(溢出时进位到下一个逻辑毫秒)
+        next = current + 1;
+      } else {
+        // 不同毫秒内，序列号置为0
+        next = currentTimestamp << stripeSequenceBits;
       }
-    } else {
-      // 不同毫秒内，序列号置为0
-      sequence = 0L;
-    }
 
-    // 上次生成ID的时间戳
-    lastTimestamp = currentTimestamp;
+      if (state.compareAndSet(current, next)) {
+        return toId(stripe, next);
+      }
+    }
+  }
 
-    // 移位并通过或运算拼到一起组成64位的ID
-    long id = ((currentTimestamp - startTimestamp) << TIMESTAMP_SHIFT) // 时间戳部分
-      | (dataCenterId << DATA_CENTER_ID_SHIFT) // 数据中心标识ID部分
-      | (machineId << MACHINE_ID_SHIFT) // 机器标识ID部分
-      | sequence; // 序列号部分
+  /**
+   * 移位并通过或运算把分段的状态字拼成64位的ID
+   *
+   * @param stripe 分段下标
+   * @param state 状态字
+   * @return long
+   */
+  private long toId(int stripe, long state) {
+    return ((state >>> stripeSequenceBits) << TIMESTAMP_SHIFT) // 时间戳部分
+      | workerBits // 数据中心标识ID与机器标识ID部分
+      | ((long) stripe << stripeSequenceBits) // 序列号高位: 分段下标
+      | (state & maxStripeSequence); // 序列号低位: 分段内序列
+  }
 
-    return String.valueOf(id);
+  /**
+   * 当前线程对应的分段下标
+   *
+   * @return int
+   */
+  private int currentStripe() {
+    return (int) Thread.currentThread().getId() & stripeMask;
   }
 
   /**
-   * 阻塞到下一个毫秒, 直到获得新的时间戳
+   * 挂起到下一个毫秒, 直到获得新的时间戳
    *
    * @param lastTimestamp 上次生成ID的时间戳
    * @return long
@@ -165,21 +469,81 @@ public class SnowflakeIdGenerator {
   private long getNextTimestamp(long lastTimestamp) {
     long currentTimestamp = getCurrentTimestamp();
     while (currentTimestamp <= lastTimestamp) {
+      LockSupport.parkNanos(PARK_NANOS);
       currentTimestamp = getCurrentTimestamp();
     }
 
     return currentTimestamp;
   }
 
+  /**
+   * 把所有分段推进到指定时间戳，之后生成的ID的时间戳都大于该值
+   * <p>接管自动分配的机器标识时，用于避开上一个持有者可能已经使用过的时间戳；当前时间小于该值时按时钟回退处理</p>
+   *
+   * @param timestamp 时间戳(毫秒)
+   */
+  public void advanceTo(long timestamp) {
+    long relativeTimestamp = timestamp - startTimestamp;
+    if (relativeTimestamp <= 0) {
+      return;
+    }
+
+    long state = (relativeTimestamp << stripeSequenceBits) | maxStripeSequence;
+    for (AtomicLong stripe : stripes) {
+      stripe.accumulateAndGet(state, Math::max);
+    }
+  }
+
+  /**
+   * 已使用(含批量预支)的最大时间戳(毫秒)
+   *
+   * @return long
+   */
+  public long getLastTimestamp() {
+    long lastTimestamp = reservedTimestamp.get();
+    for (AtomicLong stripe : stripes) {
+      lastTimestamp = Math.max(lastTimestamp, stripe.get() >>> stripeSequenceBits);
+    }
+
+    return lastTimestamp + startTimestamp;
+  }
+
+  public long getClockBackwardsAbsorbedCount() {
+    return clockBackwardsAbsorbedCount.sum();
+  }
+
+  public long getClockBackwardsWaitedCount() {
+    return clockBackwardsWaitedCount.sum();
+  }
+
+  public long getClockBackwardsRefusedCount() {
+    return clockBackwardsRefusedCount.sum();
+  }
+
+  public long getSequenceExhaustedCount() {
+    return sequenceExhaustedCount.sum();
+  }
+
   /**
    * 返回以毫秒为单位的当前时间
    *
    * @return long
    */
-  private long getCurrentTimestamp() {
+  protected long getCurrentTimestamp() {
     return System.currentTimeMillis();
   }
 
+  /**
+   * 填充到独占缓存行的 AtomicLong，避免相邻分段之间的伪共享
+   */
+  @SuppressWarnings("unused")
+  private static class PaddedAtomicLong extends AtomicLong {
+
+    private static final long serialVersionUID = -3415778863941386253L;
+
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+
   public static void main(String[] args) {
     SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1483200000000L, 2, 3);
 
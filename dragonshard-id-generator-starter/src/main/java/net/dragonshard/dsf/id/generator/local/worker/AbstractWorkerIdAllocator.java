@@ -0,0 +1,245 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.local.worker;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+import net.dragonshard.dsf.id.generator.configuration.property.local.WorkerIdProperties;
+
+/**
+ * 机器标识分配器基类
+ * <p>启动时按顺序抢占第一个空闲槽位，之后按续租间隔续租；租约在最后一次成功续租后的租约时长内有效，
+ * 槽位被其他实例占用或连接中断时立即失效；租约丢失后在续租线程上重新抢占槽位，抢占成功后恢复有效</p>
+ * <p>每次续租前先持久化 max(当前时间, 已使用的最大时间戳) + 租约时长，租约有效期内使用的时间戳不会超过该值；
+ * 正常关闭时持久化实际使用的最大时间戳</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public abstract class AbstractWorkerIdAllocator implements WorkerIdAllocator {
+
+  protected static final String WORKER_ID_PREFIX = "DsfWorkerId";
+  private static final int MACHINE_ID_BITS = 5;
+  private static final int MAX_WORKER_ID = (1 << 10) - 1;
+
+  protected final WorkerIdProperties workerIdProperties;
+  // 持有者标识，区分同一槽位的不同实例
+  protected final String token = UUID.randomUUID().toString();
+
+  private volatile int workerId = -1;
+  // 是否仍持有该槽位，租约丢失后为false
+  private volatile boolean slotHeld;
+  private volatile long lastTimestamp;
+  private volatile long leaseDeadline;
+  private volatile LongSupplier timestampSupplier = System::currentTimeMillis;
+  private volatile LeaseListener leaseListener;
+  private ScheduledExecutorService renewExecutor;
+
+  protected AbstractWorkerIdAllocator(WorkerIdProperties workerIdProperties) {
+    this.workerIdProperties = workerIdProperties;
+  }
+
+  @PostConstruct
+  public void init() throws Exception {
+    long renewIntervalMs = workerIdProperties.getRenewIntervalMs();
+    if (renewIntervalMs <= 0 || renewIntervalMs >= workerIdProperties.getLeaseTimeMs()) {
+      throw ExceptionUtils.get("Renew interval must be greater than 0 and less than lease time");
+    }
+
+    if (!acquireSlot()) {
+      throw ExceptionUtils
+        .get(String.format("No worker id available, all %d slots are leased", MAX_WORKER_ID + 1));
+    }
+
+    log.info("Leased worker id {} (data center {}, machine {}), last timestamp {}", workerId,
+      getDataCenterId(), getMachineId(), lastTimestamp);
+
+    renewExecutor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("dsf-worker-id-renew-%d").setDaemon(true).build());
+    renewExecutor.scheduleWithFixedDelay(this::renewLease, renewIntervalMs, renewIntervalMs,
+      TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (renewExecutor != null) {
+      renewExecutor.shutdownNow();
+    }
+
+    if (workerId < 0 || !slotHeld) {
+      return;
+    }
+
+    try {
+      saveTimestamp(workerId, currentLastTimestamp());
+      release(workerId);
+    } catch (Exception e) {
+      log.warn("Release worker id {} failed", workerId, e);
+    }
+  }
+
+  @Override
+  public long getDataCenterId() {
+    return workerId >> MACHINE_ID_BITS;
+  }
+
+  @Override
+  public long getMachineId() {
+    return workerId & ((1 << MACHINE_ID_BITS) - 1);
+  }
+
+  @Override
+  public long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  @Override
+  public boolean isLeased() {
+    return System.currentTimeMillis() < leaseDeadline;
+  }
+
+  @Override
+  public void setTimestampSupplier(LongSupplier timestampSupplier) {
+    this.timestampSupplier = timestampSupplier;
+  }
+
+  @Override
+  public void setLeaseListener(LeaseListener leaseListener) {
+    this.leaseListener = leaseListener;
+  }
+
+  /**
+   * 续租并持久化时间戳；续租失败时租约立即失效，之后的续租成功时恢复；租约丢失时重新抢占槽位
+   */
+  protected void renewLease() {
+    long now = System.currentTimeMillis();
+    try {
+      if (!slotHeld) {
+        reacquireSlot();
+        return;
+      }
+
+      if (!renew(workerId)) {
+        expireLease();
+        slotHeld = false;
+        log.error("Worker id {} lease is lost, searching for a slot again", workerId);
+        reacquireSlot();
+        return;
+      }
+
+      saveTimestamp(workerId, currentLastTimestamp() + workerIdProperties.getLeaseTimeMs());
+      leaseDeadline = now + workerIdProperties.getLeaseTimeMs();
+    } catch (Exception e) {
+      log.warn("Renew worker id {} failed", workerId, e);
+    }
+  }
+
+  /**
+   * 立即使租约失效
+   */
+  protected void expireLease() {
+    leaseDeadline = 0L;
+  }
+
+  /**
+   * 在续租线程上立即续租一次
+   */
+  protected void renewLeaseAsync() {
+    ScheduledExecutorService executor = renewExecutor;
+    if (executor != null && !executor.isShutdown()) {
+      executor.execute(this::renewLease);
+    }
+  }
+
+  /**
+   * 按顺序抢占第一个空闲槽位，通知生成器切换并持久化时间戳后租约生效
+   *
+   * @return 是否抢占成功
+   */
+  private boolean acquireSlot() throws Exception {
+    for (int i = 0; i <= MAX_WORKER_ID; i++) {
+      // 在抢占之前取时间，使本地租约不会晚于远端租约到期
+      long now = System.currentTimeMillis();
+      if (!tryAcquire(i)) {
+        continue;
+      }
+
+      long savedTimestamp = loadTimestamp(i);
+      if (savedTimestamp > now) {
+        // 上一个持有者的租约时间尚未过去，接管后需要等待时钟追上，优先选择其他槽位
+        release(i);
+        continue;
+      }
+
+      workerId = i;
+      lastTimestamp = savedTimestamp;
+      slotHeld = true;
+      LeaseListener listener = leaseListener;
+      if (listener != null) {
+        // 生成器推进到该槽位已使用的时间戳之后，租约才恢复有效
+        listener.onLeased(getDataCenterId(), getMachineId(), savedTimestamp);
+      }
+
+      saveTimestamp(i, currentLastTimestamp() + workerIdProperties.getLeaseTimeMs());
+      leaseDeadline = now + workerIdProperties.getLeaseTimeMs();
+      return true;
+    }
+
+    return false;
+  }
+
+  private void reacquireSlot() throws Exception {
+    if (acquireSlot()) {
+      log.info("Leased worker id {} (data center {}, machine {}), last timestamp {}", workerId,
+        getDataCenterId(), getMachineId(), lastTimestamp);
+    } else {
+      log.error("No worker id available, refusing to generate id");
+    }
+  }
+
+  private long currentLastTimestamp() {
+    return Math.max(System.currentTimeMillis(), timestampSupplier.getAsLong());
+  }
+
+  /**
+   * 抢占槽位
+   *
+   * @param workerId 槽位
+   * @return 是否抢占成功
+   */
+  protected abstract boolean tryAcquire(int workerId) throws Exception;
+
+  /**
+   * 续租槽位，租约已过期或槽位已被其他实例占用时返回false，不在续租中重新抢占
+   *
+   * @param workerId 槽位
+   * @return 是否续租成功
+   */
+  protected abstract boolean renew(int workerId) throws Exception;
+
+  protected abstract void release(int workerId) throws Exception;
+
+  protected abstract long loadTimestamp(int workerId) throws Exception;
+
+  protected abstract void saveTimestamp(int workerId, long timestamp) throws Exception;
+}
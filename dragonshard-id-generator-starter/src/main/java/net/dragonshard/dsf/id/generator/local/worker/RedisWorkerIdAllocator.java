@@ -0,0 +1,120 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.local.worker;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.core.toolkit.KeyUtil;
+import net.dragonshard.dsf.id.generator.configuration.property.local.WorkerIdProperties;
+import net.dragonshard.dsf.id.generator.redis.handler.RedisHandler;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * 机器标识分配器（Redis）
+ * <p>每个槽位一个 SET NX PX 的租约Key，值为持有者标识；时间戳保存在不过期的Key中</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class RedisWorkerIdAllocator extends AbstractWorkerIdAllocator {
+
+  private final RedisHandler redisHandler;
+  private final RedisScript<Long> renewScript;
+  private final RedisScript<Long> releaseScript;
+
+  public RedisWorkerIdAllocator(WorkerIdProperties workerIdProperties, RedisHandler redisHandler) {
+    super(workerIdProperties);
+    this.redisHandler = redisHandler;
+    this.renewScript = new DefaultRedisScript<Long>(buildRenewLuaScript(), Long.class);
+    this.releaseScript = new DefaultRedisScript<Long>(buildReleaseLuaScript(), Long.class);
+  }
+
+  /**
+   * 续租: 仍由自己持有则延长过期时间，否则返回0
+   * <p>租约已过期时期间槽位可能已被其他实例使用，不在此处重新抢占，由分配器重新抢占并加载时间戳</p>
+   */
+  private String buildRenewLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("local leaseKey = KEYS[1];");
+    lua.append("\nlocal token = ARGV[1];");
+    lua.append("\nlocal leaseTime = ARGV[2];");
+    lua.append("\nif redis.call('get', leaseKey) == token then");
+    lua.append("\n  return redis.call('pexpire', leaseKey, leaseTime);");
+    lua.append("\nend");
+    lua.append("\nreturn 0;");
+
+    return lua.toString();
+  }
+
+  private String buildReleaseLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("local leaseKey = KEYS[1];");
+    lua.append("\nlocal token = ARGV[1];");
+    lua.append("\nif redis.call('get', leaseKey) == token then");
+    lua.append("\n  return redis.call('del', leaseKey);");
+    lua.append("\nend");
+    lua.append("\nreturn 0;");
+
+    return lua.toString();
+  }
+
+  @Override
+  protected boolean tryAcquire(int workerId) {
+    Boolean acquired = getRedisTemplate().opsForValue()
+      .setIfAbsent(getLeaseKey(workerId), token, workerIdProperties.getLeaseTimeMs(),
+        TimeUnit.MILLISECONDS);
+    return Boolean.TRUE.equals(acquired);
+  }
+
+  @Override
+  protected boolean renew(int workerId) {
+    Long result = getRedisTemplate().execute(renewScript,
+      Collections.singletonList(getLeaseKey(workerId)), token,
+      String.valueOf(workerIdProperties.getLeaseTimeMs()));
+    return result != null && result == 1L;
+  }
+
+  @Override
+  protected void release(int workerId) {
+    getRedisTemplate()
+      .execute(releaseScript, Collections.singletonList(getLeaseKey(workerId)), token);
+  }
+
+  @Override
+  protected long loadTimestamp(int workerId) {
+    String value = getRedisTemplate().opsForValue().get(getTimestampKey(workerId));
+    return value == null ? 0L : Long.parseLong(value);
+  }
+
+  @Override
+  protected void saveTimestamp(int workerId, long timestamp) {
+    getRedisTemplate().opsForValue().set(getTimestampKey(workerId), String.valueOf(timestamp));
+  }
+
+  private StringRedisTemplate getRedisTemplate() {
+    return redisHandler.getRedisTemplate();
+  }
+
+  private String getLeaseKey(int workerId) {
+    return KeyUtil
+      .getCompositeKey(WORKER_ID_PREFIX, workerIdProperties.getNamespace(), "lease:" + workerId);
+  }
+
+  private String getTimestampKey(int workerId) {
+    return KeyUtil.getCompositeKey(WORKER_ID_PREFIX, workerIdProperties.getNamespace(),
+      "timestamp:" + workerId);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.local.worker;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 机器标识分配器
+ * <p>从 1024 个槽位(5位数据中心标识 + 5位机器标识)中租用一个，后台定期续租，并持久化已使用的时间戳，
+ * 使重启后接管同一槽位时不会重复发放ID</p>
+ * <p>租约丢失后重新抢占槽位，通过 {@link LeaseListener} 通知生成器切换</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public interface WorkerIdAllocator {
+
+  /**
+   * 租用到的数据中心标识ID(0~31)
+   *
+   * @return long
+   */
+  long getDataCenterId();
+
+  /**
+   * 租用到的机器标识ID(0~31)
+   *
+   * @return long
+   */
+  long getMachineId();
+
+  /**
+   * 该槽位上一个持有者可能使用过的最大时间戳(毫秒)，没有记录时为0
+   *
+   * @return long
+   */
+  long getLastTimestamp();
+
+  /**
+   * 租约是否有效，无效时不能再用该机器标识生成ID
+   *
+   * @return boolean
+   */
+  boolean isLeased();
+
+  /**
+   * 设置续租时持久化的时间戳来源，默认为系统时间
+   *
+   * @param timestampSupplier 已使用的最大时间戳(毫秒)
+   */
+  void setTimestampSupplier(LongSupplier timestampSupplier);
+
+  /**
+   * 设置重新租用到槽位时的回调
+   *
+   * @param leaseListener 回调
+   */
+  void setLeaseListener(LeaseListener leaseListener);
+
+  /**
+   * 租用到槽位的回调，在租约恢复有效之前调用
+   */
+  @FunctionalInterface
+  interface LeaseListener {
+
+    /**
+     * 租用到槽位
+     *
+     * @param dataCenterId 数据中心标识ID(0~31)
+     * @param machineId 机器标识ID(0~31)
+     * @param lastTimestamp 该槽位上一个持有者可能使用过的最大时间戳(毫秒)
+     */
+    void onLeased(long dataCenterId, long machineId, long lastTimestamp);
+  }
+}
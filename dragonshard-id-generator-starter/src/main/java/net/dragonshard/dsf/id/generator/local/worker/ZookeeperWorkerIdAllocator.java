@@ -0,0 +1,128 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.local.worker;
+
+import java.nio.charset.StandardCharsets;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.id.generator.configuration.property.local.WorkerIdProperties;
+import net.dragonshard.dsf.id.generator.zookeeper.handler.CuratorHandler;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * 机器标识分配器（Zookeeper）
+ * <p>每个槽位一个临时节点，会话存在即持有租约；时间戳保存在持久节点中。
+ * 连接挂起或会话丢失时租约立即失效，重连后重新确认槽位归属</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class ZookeeperWorkerIdAllocator extends AbstractWorkerIdAllocator {
+
+  private final CuratorHandler curatorHandler;
+
+  public ZookeeperWorkerIdAllocator(WorkerIdProperties workerIdProperties,
+    CuratorHandler curatorHandler) {
+    super(workerIdProperties);
+    this.curatorHandler = curatorHandler;
+  }
+
+  @Override
+  public void init() throws Exception {
+    curatorHandler.validateStartedStatus();
+    curatorHandler.getCurator().getConnectionStateListenable().addListener((client, newState) -> {
+      if (newState == ConnectionState.SUSPENDED || newState == ConnectionState.LOST) {
+        expireLease();
+        log.warn("Curator connection {}, worker id lease expired", newState);
+      } else if (newState == ConnectionState.RECONNECTED) {
+        renewLeaseAsync();
+      }
+    });
+
+    super.init();
+  }
+
+  @Override
+  protected boolean tryAcquire(int workerId) throws Exception {
+    try {
+      getCurator().create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL)
+        .forPath(getLeasePath(workerId), token.getBytes(StandardCharsets.UTF_8));
+      return true;
+    } catch (KeeperException.NodeExistsException e) {
+      return false;
+    }
+  }
+
+  @Override
+  protected boolean renew(int workerId) throws Exception {
+    Stat stat = getCurator().checkExists().forPath(getLeasePath(workerId));
+    if (stat == null) {
+      // 临时节点已随会话删除，期间槽位可能已被其他实例使用，按失去槽位处理，由分配器重新抢占并加载时间戳
+      return false;
+    }
+
+    return isOwner(stat);
+  }
+
+  @Override
+  protected void release(int workerId) throws Exception {
+    Stat stat = getCurator().checkExists().forPath(getLeasePath(workerId));
+    if (stat != null && isOwner(stat)) {
+      getCurator().delete().withVersion(stat.getVersion()).forPath(getLeasePath(workerId));
+    }
+  }
+
+  @Override
+  protected long loadTimestamp(int workerId) throws Exception {
+    String path = getTimestampPath(workerId);
+    if (!curatorHandler.pathExist(path)) {
+      return 0L;
+    }
+
+    byte[] data = getCurator().getData().forPath(path);
+    return data == null || data.length == 0 ? 0L
+      : Long.parseLong(new String(data, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  protected void saveTimestamp(int workerId, long timestamp) throws Exception {
+    String path = getTimestampPath(workerId);
+    curatorHandler.ensurePath(path, CreateMode.PERSISTENT);
+    getCurator().setData()
+      .forPath(path, String.valueOf(timestamp).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private boolean isOwner(Stat stat) throws Exception {
+    return stat.getEphemeralOwner() == getCurator().getZookeeperClient().getZooKeeper()
+      .getSessionId();
+  }
+
+  private CuratorFramework getCurator() {
+    return curatorHandler.getCurator();
+  }
+
+  private String getLeasePath(int workerId) {
+    return curatorHandler
+      .getPath(WORKER_ID_PREFIX, workerIdProperties.getNamespace() + "/lease/" + workerId);
+  }
+
+  private String getTimestampPath(int workerId) {
+    return curatorHandler
+      .getPath(WORKER_ID_PREFIX, workerIdProperties.getNamespace() + "/timestamp/" + workerId);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * ID生成器指标
+ * <p>生成器默认使用 {@link #NOOP}，存在 MeterRegistry 时注入 Micrometer 实现；
+ * 调用方在 {@link #isEnabled()} 为 false 时不应计时，避免热点路径上的额外开销</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public interface IdGeneratorMetrics {
+
+  String BACKEND_LOCAL = "local";
+  String BACKEND_REDIS = "redis";
+  String BACKEND_ZOOKEEPER = "zookeeper";
+
+  String OPERATION_SINGLE = "single";
+  String OPERATION_BATCH = "batch";
+  String OPERATION_ASYNC = "async";
+
+  IdGeneratorMetrics NOOP = new IdGeneratorMetrics() {
+
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+
+    @Override
+    public void recordLatency(String backend, String operation, long nanos) {
+    }
+
+    @Override
+    public void recordRoundTrips(String backend, int roundTrips, int ids) {
+    }
+
+    @Override
+    public void recordSegmentLoad(String backend, long nanos) {
+    }
+
+    @Override
+    public void bindCounter(String name, LongSupplier count, String... tags) {
+    }
+  };
+
+  boolean isEnabled();
+
+  /**
+   * 记录一次调用的耗时
+   *
+   * @param backend 生成器类型
+   * @param operation 调用类型(single/batch/async)
+   * @param nanos 耗时(纳秒)
+   */
+  void recordLatency(String backend, String operation, long nanos);
+
+  /**
+   * 记录远程往返次数与得到的ID个数，两者之比即每个ID的远程往返次数
+   *
+   * @param backend 生成器类型
+   * @param roundTrips 远程往返次数
+   * @param ids ID个数
+   */
+  void recordRoundTrips(String backend, int roundTrips, int ids);
+
+  /**
+   * 记录一次号段(区间)加载的耗时
+   *
+   * @param backend 生成器类型
+   * @param nanos 耗时(纳秒)
+   */
+  void recordSegmentLoad(String backend, long nanos);
+
+  /**
+   * 绑定由生成器自身维护的累计计数器
+   *
+   * @param name 指标名称(不含前缀)
+   * @param count 累计值
+   * @param tags 标签键值对
+   */
+  void bindCounter(String name, LongSupplier count, String... tags);
+}
@@ -0,0 +1,106 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * ID生成器指标（Micrometer）
+ * <ul>
+ * <li>dsf.id.generator.latency: 调用耗时，标签 backend、operation，带百分位直方图</li>
+ * <li>dsf.id.generator.round.trips / dsf.id.generator.ids: 远程往返次数与ID个数，标签 backend</li>
+ * <li>dsf.id.generator.segment.load: 号段(区间)加载耗时，标签 backend</li>
+ * <li>dsf.id.generator.sequence.exhausted: 毫秒内序列耗尽的等待次数(local)</li>
+ * <li>dsf.id.generator.clock.backwards: 时钟回退次数(local)，标签 action(absorbed/waited/refused)</li>
+ * </ul>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class MicrometerIdGeneratorMetrics implements IdGeneratorMetrics {
+
+  private static final String PREFIX = "dsf.id.generator.";
+  private static final String TAG_BACKEND = "backend";
+  private static final String TAG_OPERATION = "operation";
+
+  private final MeterRegistry meterRegistry;
+  // 缓存已注册的指标，避免每次调用都到 MeterRegistry 中查找
+  private final Map<String, Timer> latencyTimerMap = new ConcurrentHashMap<String, Timer>();
+  private final Map<String, Timer> segmentLoadTimerMap = new ConcurrentHashMap<String, Timer>();
+  private final Map<String, Counter> roundTripsCounterMap = new ConcurrentHashMap<String, Counter>();
+  private final Map<String, Counter> idsCounterMap = new ConcurrentHashMap<String, Counter>();
+  // FunctionCounter 只持有弱引用，这里保持强引用
+  private final List<LongSupplier> boundCounters = new CopyOnWriteArrayList<LongSupplier>();
+
+  public MicrometerIdGeneratorMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void recordLatency(String backend, String operation, long nanos) {
+    latencyTimerMap.computeIfAbsent(backend + ":" + operation,
+      key -> Timer.builder(PREFIX + "latency")
+        .tags(TAG_BACKEND, backend, TAG_OPERATION, operation)
+        .publishPercentileHistogram()
+        .register(meterRegistry))
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void recordRoundTrips(String backend, int roundTrips, int ids) {
+    if (roundTrips > 0) {
+      roundTripsCounterMap.computeIfAbsent(backend,
+        key -> Counter.builder(PREFIX + "round.trips").tag(TAG_BACKEND, backend)
+          .register(meterRegistry))
+        .increment(roundTrips);
+    }
+
+    if (ids > 0) {
+      idsCounterMap.computeIfAbsent(backend,
+        key -> Counter.builder(PREFIX + "ids").tag(TAG_BACKEND, backend).register(meterRegistry))
+        .increment(ids);
+    }
+  }
+
+  @Override
+  public void recordSegmentLoad(String backend, long nanos) {
+    segmentLoadTimerMap.computeIfAbsent(backend,
+      key -> Timer.builder(PREFIX + "segment.load").tag(TAG_BACKEND, backend)
+        .publishPercentileHistogram()
+        .register(meterRegistry))
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void bindCounter(String name, LongSupplier count, String... tags) {
+    boundCounters.add(count);
+    FunctionCounter.builder(PREFIX + name, count, LongSupplier::getAsLong)
+      .tags(tags)
+      .register(meterRegistry);
+  }
+}
@@ -13,6 +13,9 @@
 
 package net.dragonshard.dsf.id.generator.redis;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface RedisIdGenerator {
 
   /**
@@ -32,4 +35,32 @@ public interface RedisIdGenerator {
   String[] nextUniqueIds(String name, String key, int step, int length, int count) throws Exception;
 
   String[] nextUniqueIds(String compositeKey, int step, int length, int count) throws Exception;
+
+  /**
+   * 异步获取全局唯一ID，规则同 {@link #nextUniqueId(String, String, int, int)}
+   * <p>基于 Lettuce 的 reactive 连接，不占用调用线程等待 Redis 响应；Redis 异常通过 CompletableFuture 异常完成返回</p>
+   *
+   * @param name 资源名字
+   * @param key 资源Key
+   * @param step 递增值
+   * @param length 长度
+   * @return CompletableFuture
+   */
+  CompletableFuture<String> nextUniqueIdAsync(String name, String key, int step, int length);
+
+  CompletableFuture<String> nextUniqueIdAsync(String compositeKey, int step, int length);
+
+  CompletableFuture<String[]> nextUniqueIdsAsync(String compositeKey, int step, int length,
+    int count);
+
+  /**
+   * 异步为多个Key各获取一个全局唯一ID，各Key的命令连续写入同一连接(pipeline)，只等待一次往返
+   *
+   * @param compositeKeys 组合Key列表
+   * @param step 递增值
+   * @param length 长度
+   * @return CompletableFuture 与 compositeKeys 顺序一一对应的ID列表
+   */
+  CompletableFuture<List<String>> nextUniqueIdAsync(List<String> compositeKeys, int step,
+    int length);
 }
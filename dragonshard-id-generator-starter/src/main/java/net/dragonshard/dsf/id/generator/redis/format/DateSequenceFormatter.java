@@ -0,0 +1,138 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.redis.format;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+
+/**
+ * 日期前缀 + 序号 格式化器 (yyyyMMddHHmmssSSS + 序号)
+ * <p>直接把数字写入线程私有的 char[]，并缓存当前秒的 yyyyMMddHHmmss 前缀，
+ * 格式化过程除最终的 String 外不产生对象；该类是线程安全的</p>
+ *
+ * <p>序号部分与原 DecimalFormat 实现的输出保持一致：
+ * 序号位数小于 length 时补 0 至 8 位(序号本身超过 8 位时原样输出)，否则截取末尾 length 位</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class DateSequenceFormatter {
+
+  private static final int SECOND_PREFIX_LENGTH = 14; // yyyyMMddHHmmss
+  private static final int DATE_LENGTH = SECOND_PREFIX_LENGTH + 3; // yyyyMMddHHmmssSSS
+  private static final int MAX_SEQUENCE_LENGTH = 19; // Long.MAX_VALUE 的位数
+  private static final int PAD_LENGTH = 8; // 对应原格式 "00000000"
+
+  private final ZoneId zoneId;
+  // 当前秒的前缀，整体替换，不可变
+  private volatile SecondPrefix secondPrefix;
+  private final ThreadLocal<char[]> bufferHolder = ThreadLocal
+    .withInitial(() -> new char[DATE_LENGTH + MAX_SEQUENCE_LENGTH]);
+
+  public DateSequenceFormatter() {
+    this(ZoneId.systemDefault());
+  }
+
+  public DateSequenceFormatter(ZoneId zoneId) {
+    this.zoneId = zoneId;
+  }
+
+  /**
+   * 格式化
+   *
+   * @param epochMillis 时间戳(毫秒)
+   * @param sequence 序号，不能为负数
+   * @param length 序号长度
+   * @return String
+   */
+  public String format(long epochMillis, long sequence, int length) {
+    if (sequence < 0) {
+      throw ExceptionUtils.get(String.format("Sequence can't be less than 0, sequence: %d", sequence));
+    }
+
+    char[] buffer = bufferHolder.get();
+    writeDate(buffer, epochMillis);
+    int size = writeSequence(buffer, DATE_LENGTH, sequence, length);
+    return new String(buffer, 0, size);
+  }
+
+  private void writeDate(char[] buffer, long epochMillis) {
+    long epochSecond = Math.floorDiv(epochMillis, 1000L);
+    SecondPrefix prefix = secondPrefix;
+    if (prefix == null || prefix.epochSecond != epochSecond) {
+      prefix = new SecondPrefix(epochSecond, zoneId);
+      secondPrefix = prefix;
+    }
+
+    System.arraycopy(prefix.chars, 0, buffer, 0, SECOND_PREFIX_LENGTH);
+    int millis = (int) Math.floorMod(epochMillis, 1000L);
+    buffer[SECOND_PREFIX_LENGTH] = (char) ('0' + millis / 100);
+    buffer[SECOND_PREFIX_LENGTH + 1] = (char) ('0' + millis / 10 % 10);
+    buffer[SECOND_PREFIX_LENGTH + 2] = (char) ('0' + millis % 10);
+  }
+
+  private static int writeSequence(char[] buffer, int offset, long sequence, int length) {
+    int digits = digits(sequence);
+    int width = digits < length ? Math.max(digits, PAD_LENGTH) : Math.max(length, 0);
+    long value = sequence;
+    for (int i = offset + width - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+
+    return offset + width;
+  }
+
+  private static int digits(long value) {
+    long bound = 10;
+    for (int i = 1; i < MAX_SEQUENCE_LENGTH; i++) {
+      if (value < bound) {
+        return i;
+      }
+      bound *= 10;
+    }
+
+    return MAX_SEQUENCE_LENGTH;
+  }
+
+  private static void writeNumber(char[] chars, int offset, int width, int value) {
+    for (int i = offset + width - 1; i >= offset; i--) {
+      chars[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  /**
+   * 某一秒的 yyyyMMddHHmmss 前缀
+   */
+  private static class SecondPrefix {
+
+    private final long epochSecond;
+    private final char[] chars = new char[SECOND_PREFIX_LENGTH];
+
+    private SecondPrefix(long epochSecond, ZoneId zoneId) {
+      this.epochSecond = epochSecond;
+      LocalDateTime dateTime = LocalDateTime
+        .ofEpochSecond(epochSecond, 0, zoneId.getRules().getOffset(Instant.ofEpochSecond(epochSecond)));
+      writeNumber(chars, 0, 4, dateTime.getYear());
+      writeNumber(chars, 4, 2, dateTime.getMonthValue());
+      writeNumber(chars, 6, 2, dateTime.getDayOfMonth());
+      writeNumber(chars, 8, 2, dateTime.getHour());
+      writeNumber(chars, 10, 2, dateTime.getMinute());
+      writeNumber(chars, 12, 2, dateTime.getSecond());
+    }
+  }
+}
@@ -13,6 +13,7 @@
 
 package net.dragonshard.dsf.id.generator.redis.handler;
 
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
 /**
@@ -23,4 +24,11 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 public interface RedisHandler {
 
   StringRedisTemplate getRedisTemplate();
+
+  /**
+   * 获取 reactive 模板，连接工厂不支持 reactive(如 Jedis)时返回 null
+   *
+   * @return ReactiveStringRedisTemplate
+   */
+  ReactiveStringRedisTemplate getReactiveRedisTemplate();
 }
@@ -13,17 +13,48 @@
 
 package net.dragonshard.dsf.id.generator.redis.handler;
 
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 public class RedisHandlerImpl implements RedisHandler {
 
   @Autowired
   private StringRedisTemplate redisTemplate;
+  private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+  /**
+   * 基于同步模板的连接工厂与Key序列化器构建 reactive 模板，使两者的Key(含业务前缀)保持一致
+   */
+  @PostConstruct
+  @SuppressWarnings("unchecked")
+  public void init() {
+    RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+    if (!(connectionFactory instanceof ReactiveRedisConnectionFactory)) {
+      return;
+    }
+
+    RedisSerializationContext<String, String> serializationContext = RedisSerializationContext
+      .<String, String>newSerializationContext(RedisSerializer.string())
+      .key((RedisSerializer<String>) redisTemplate.getKeySerializer())
+      .build();
+    reactiveRedisTemplate = new ReactiveStringRedisTemplate(
+      (ReactiveRedisConnectionFactory) connectionFactory, serializationContext);
+  }
 
   @Override
   public StringRedisTemplate getRedisTemplate() {
     return redisTemplate;
   }
 
+  @Override
+  public ReactiveStringRedisTemplate getReactiveRedisTemplate() {
+    return reactiveRedisTemplate;
+  }
+
 }
@@ -13,21 +13,31 @@
 
 package net.dragonshard.dsf.id.generator.redis.impl;
 
-import java.text.DecimalFormat;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import net.dragonshard.dsf.core.toolkit.DateUtil;
 import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
 import net.dragonshard.dsf.core.toolkit.KeyUtil;
 import net.dragonshard.dsf.id.generator.configuration.property.RedisIdGeneratorProperties;
+import net.dragonshard.dsf.id.generator.configuration.property.redis.SegmentProperties;
+import net.dragonshard.dsf.id.generator.metrics.IdGeneratorMetrics;
 import net.dragonshard.dsf.id.generator.redis.RedisIdGenerator;
+import net.dragonshard.dsf.id.generator.redis.format.DateSequenceFormatter;
 import net.dragonshard.dsf.id.generator.redis.handler.RedisHandler;
+import net.dragonshard.dsf.id.generator.segment.SegmentBuffer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
@@ -36,24 +46,48 @@ import org.springframework.util.Assert;
 @Slf4j
 public class RedisIdGeneratorImpl implements RedisIdGenerator {
 
-  private static final String DATE_FORMAT = "yyyyMMddHHmmssSSS";
-  private static final String DECIMAL_FORMAT = "00000000";
   private static final int MAX_BATCH_COUNT = 1000;
 
   @Autowired
   private RedisHandler redisHandler;
   private RedisIdGeneratorProperties redisIdGeneratorProperties;
   private RedisScript<List<Object>> redisScript;
+  private RedisScript<List<Object>> batchRedisScript;
+  // 号段模式: 每个compositeKey一个双缓冲号段
+  private final Map<String, SegmentBuffer> segmentBufferMap = new ConcurrentHashMap<String, SegmentBuffer>();
+  private ExecutorService segmentExecutor;
+  private final DateSequenceFormatter formatter = new DateSequenceFormatter();
+  private IdGeneratorMetrics idGeneratorMetrics = IdGeneratorMetrics.NOOP;
 
   public RedisIdGeneratorImpl(RedisIdGeneratorProperties redisIdGeneratorProperties) {
     this.redisIdGeneratorProperties = redisIdGeneratorProperties;
   }
 
+  @Autowired(required = false)
+  public void setIdGeneratorMetrics(IdGeneratorMetrics idGeneratorMetrics) {
+    this.idGeneratorMetrics = idGeneratorMetrics;
+  }
+
   @SuppressWarnings({"unchecked", "rawtypes"})
   @PostConstruct
   public void init() {
     String luaScript = buildLuaScript();
     redisScript = new DefaultRedisScript(luaScript, List.class);
+    String batchLuaScript = buildBatchLuaScript();
+    batchRedisScript = new DefaultRedisScript(batchLuaScript, List.class);
+
+    if (redisIdGeneratorProperties.getSegment().isEnabled()) {
+      segmentExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("dsf-redis-id-segment-%d").setDaemon(true)
+          .build());
+    }
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (segmentExecutor != null) {
+      segmentExecutor.shutdownNow();
+    }
   }
 
   private String buildLuaScript() {
@@ -68,91 +102,293 @@ public class RedisIdGeneratorImpl implements RedisIdGenerator {
     return lua.toString();
   }
 
+  /**
+   * 批量: 一次 INCRBY step * count 与一次 TIME，返回区间的最大值，由本地展开为 count 个序号
+   */
+  private String buildBatchLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("local incrKey = KEYS[1];");
+    lua.append("\nlocal step = tonumber(ARGV[1]);");
+    lua.append("\nlocal batchCount = tonumber(ARGV[2]);");
+    lua.append("\nlocal count;");
+    lua.append("\ncount = tonumber(redis.call('incrby', incrKey, step * batchCount));");
+    lua.append("\nlocal now = redis.call('time');");
+    lua.append("\nreturn {now[1], now[2], count}");
+
+    return lua.toString();
+  }
+
   @Override
   public String nextUniqueId(String name, String key, int step, int length) throws Exception {
     Assert.hasText(name, "Parameter [ name ] is null or empty");
     Assert.hasText(key, "Parameter [ key ] is null or empty");
     String compositeKey = KeyUtil
-      .getCompositeKey(redisIdGeneratorProperties.getPrefix(), name, key);
+      .getCompositeKey(redisIdGeneratorProperties.getPrefix(), name, key,
+        redisIdGeneratorProperties.getHashTag());
     return nextUniqueId(compositeKey, step, length);
   }
 
   @Override
   public String nextUniqueId(String compositeKey, int step, int length) throws Exception {
     Assert.hasText(compositeKey, "Parameter [ composite key ] is null or empty");
+    long start = startTime();
+    if (segmentExecutor != null) {
+      String id = nextSegmentId(compositeKey, step, length);
+      record(IdGeneratorMetrics.OPERATION_SINGLE, start, 0, 1);
+      return id;
+    }
+
     List<String> keys = new ArrayList<String>();
     keys.add(compositeKey);
 
     StringRedisTemplate redisTemplate = redisHandler.getRedisTemplate();
     List<Object> result = redisTemplate.execute(redisScript, keys, step + "");
-    Object value1 = result.get(0);
-    Object value2 = result.get(1);
-    Object value3 = result.get(2);
-
-    long mill =
-      Long.parseLong(String.valueOf(value1)) * 1000 + Long.parseLong(String.valueOf(value2)) / 1000;
-    Date date = new Date(mill);
-
-    return DateUtil.formatDate(date, DATE_FORMAT) +
-      formatString((long) value3, length);
+    String id = formatId(result, length);
+    record(IdGeneratorMetrics.OPERATION_SINGLE, start, 1, 1);
+    return id;
   }
 
   @Override
   public String[] nextUniqueIds(String name, String key, int step, int length, int count)
     throws Exception {
+    Assert.hasText(name, "Parameter [ name ] is null or empty");
+    Assert.hasText(key, "Parameter [ key ] is null or empty");
+    String compositeKey = KeyUtil
+      .getCompositeKey(redisIdGeneratorProperties.getPrefix(), name, key,
+        redisIdGeneratorProperties.getHashTag());
+    return nextUniqueIds(compositeKey, step, length, count);
+  }
+
+  @Override
+  public String[] nextUniqueIds(String compositeKey, int step, int length, int count)
+    throws Exception {
+    validateCount(count);
+    Assert.hasText(compositeKey, "Parameter [ composite key ] is null or empty");
+
+    long start = startTime();
+    if (segmentExecutor != null) {
+      String[] ids = nextSegmentIds(compositeKey, step, length, count);
+      record(IdGeneratorMetrics.OPERATION_BATCH, start, 0, count);
+      return ids;
+    }
+
+    // 一次网络往返取回整个区间 [max - step * (count - 1), max]，本地展开
+    List<String> keys = new ArrayList<String>();
+    keys.add(compositeKey);
+
+    StringRedisTemplate redisTemplate = redisHandler.getRedisTemplate();
+    List<Object> result = redisTemplate.execute(batchRedisScript, keys, step + "", count + "");
+    String[] ids = formatIds(result, step, length, count);
+    record(IdGeneratorMetrics.OPERATION_BATCH, start, 1, count);
+    return ids;
+  }
+
+  @Override
+  public CompletableFuture<String> nextUniqueIdAsync(String name, String key, int step,
+    int length) {
+    Assert.hasText(name, "Parameter [ name ] is null or empty");
+    Assert.hasText(key, "Parameter [ key ] is null or empty");
+    String compositeKey = KeyUtil
+      .getCompositeKey(redisIdGeneratorProperties.getPrefix(), name, key,
+        redisIdGeneratorProperties.getHashTag());
+    return nextUniqueIdAsync(compositeKey, step, length);
+  }
+
+  @Override
+  public CompletableFuture<String> nextUniqueIdAsync(String compositeKey, int step, int length) {
+    Assert.hasText(compositeKey, "Parameter [ composite key ] is null or empty");
+    ReactiveStringRedisTemplate reactiveRedisTemplate = redisHandler.getReactiveRedisTemplate();
+    if (segmentExecutor != null || reactiveRedisTemplate == null) {
+      // 同步方法自身记录指标
+      return supplySync(() -> nextUniqueId(compositeKey, step, length));
+    }
+
+    long start = startTime();
+    return executeAsync(reactiveRedisTemplate, redisScript, compositeKey, step + "")
+      .thenApply(result -> {
+        String id = formatId(result, length);
+        record(IdGeneratorMetrics.OPERATION_ASYNC, start, 1, 1);
+        return id;
+      });
+  }
+
+  @Override
+  public CompletableFuture<String[]> nextUniqueIdsAsync(String compositeKey, int step, int length,
+    int count) {
+    validateCount(count);
+    Assert.hasText(compositeKey, "Parameter [ composite key ] is null or empty");
+    ReactiveStringRedisTemplate reactiveRedisTemplate = redisHandler.getReactiveRedisTemplate();
+    if (segmentExecutor != null || reactiveRedisTemplate == null) {
+      return supplySync(() -> nextUniqueIds(compositeKey, step, length, count));
+    }
+
+    long start = startTime();
+    return executeAsync(reactiveRedisTemplate, batchRedisScript, compositeKey, step + "",
+      count + "").thenApply(result -> {
+      String[] ids = formatIds(result, step, length, count);
+      record(IdGeneratorMetrics.OPERATION_ASYNC, start, 1, count);
+      return ids;
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<String>> nextUniqueIdAsync(List<String> compositeKeys, int step,
+    int length) {
+    Assert.notEmpty(compositeKeys, "Parameter [ composite keys ] is null or empty");
+
+    // 先全部发出再统一等待，Lettuce 在共享连接上连续写出，多个Key只花费一次往返
+    List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>(
+      compositeKeys.size());
+    for (String compositeKey : compositeKeys) {
+      futures.add(nextUniqueIdAsync(compositeKey, step, length));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+      List<String> nextUniqueIds = new ArrayList<String>(futures.size());
+      for (CompletableFuture<String> future : futures) {
+        nextUniqueIds.add(future.join());
+      }
+
+      return nextUniqueIds;
+    });
+  }
+
+  private static void validateCount(int count) {
     if (count <= 0 || count > MAX_BATCH_COUNT) {
       throw ExceptionUtils
         .get(String.format("Count can't be greater than %d or less than 0", MAX_BATCH_COUNT));
     }
+  }
+
+  private long startTime() {
+    return idGeneratorMetrics.isEnabled() ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * 记录耗时与远程往返次数，号段模式下从本地号段取号不计往返
+   */
+  private void record(String operation, long start, int roundTrips, int ids) {
+    if (start != 0L) {
+      idGeneratorMetrics
+        .recordLatency(IdGeneratorMetrics.BACKEND_REDIS, operation, System.nanoTime() - start);
+      idGeneratorMetrics.recordRoundTrips(IdGeneratorMetrics.BACKEND_REDIS, roundTrips, ids);
+    }
+  }
+
+  private String formatId(List<Object> result, int length) {
+    Object value3 = result.get(2);
+
+    return formatter.format(getTimeMillis(result), (long) value3, length);
+  }
+
+  /**
+   * 由区间最大值展开为 [max - step * (count - 1), max]，共用一个时间戳
+   */
+  private String[] formatIds(List<Object> result, int step, int length, int count) {
+    long max = (long) result.get(2);
+    long mill = getTimeMillis(result);
 
     String[] nextUniqueIds = new String[count];
     for (int i = 0; i < count; i++) {
-      nextUniqueIds[i] = nextUniqueId(name, key, step, length);
+      nextUniqueIds[i] = formatter.format(mill, max - (long) step * (count - 1 - i), length);
     }
 
     return nextUniqueIds;
   }
 
-  @Override
-  public String[] nextUniqueIds(String compositeKey, int step, int length, int count)
-    throws Exception {
-    if (count <= 0 || count > MAX_BATCH_COUNT) {
-      throw ExceptionUtils
-        .get(String.format("Count can't be greater than %d or less than 0", MAX_BATCH_COUNT));
+  /**
+   * 通过 reactive 连接执行脚本，不阻塞调用线程
+   */
+  @SuppressWarnings("unchecked")
+  private static CompletableFuture<List<Object>> executeAsync(
+    ReactiveStringRedisTemplate reactiveRedisTemplate, RedisScript<List<Object>> script,
+    String compositeKey, String... args) {
+    return reactiveRedisTemplate
+      .execute(script, Collections.singletonList(compositeKey), Arrays.asList(args))
+      .collectList().toFuture().thenApply(emitted -> {
+        // 不同驱动对多值返回的发射方式不同: 整个列表作为一个元素，或逐个元素
+        if (emitted.size() == 1 && ((List<?>) emitted).get(0) instanceof List) {
+          return emitted.get(0);
+        }
+
+        return (List<Object>) (List<?>) emitted;
+      });
+  }
+
+  /**
+   * 号段模式或不支持 reactive 连接时，在当前线程同步执行，结果包装为 CompletableFuture
+   */
+  private static <T> CompletableFuture<T> supplySync(Callable<T> callable) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    try {
+      future.complete(callable.call());
+    } catch (Exception e) {
+      future.completeExceptionally(e);
     }
 
+    return future;
+  }
+
+  /**
+   * 由 Redis TIME 的秒与微秒转换为毫秒时间戳
+   */
+  private static long getTimeMillis(List<Object> result) {
+    Object value1 = result.get(0);
+    Object value2 = result.get(1);
+
+    return Long.parseLong(String.valueOf(value1)) * 1000 + Long.parseLong(String.valueOf(value2)) / 1000;
+  }
+
+  /**
+   * 号段模式: 从本地号段分配序号，日期部分取本机时间
+   */
+  private String nextSegmentId(String compositeKey, int step, int length) {
+    long value = getSegmentBuffer(compositeKey, step).nextValue();
+    return formatter.format(System.currentTimeMillis(), value, length);
+  }
+
+  private String[] nextSegmentIds(String compositeKey, int step, int length, int count) {
     String[] nextUniqueIds = new String[count];
     for (int i = 0; i < count; i++) {
-      nextUniqueIds[i] = nextUniqueId(compositeKey, step, length);
+      nextUniqueIds[i] = nextSegmentId(compositeKey, step, length);
     }
 
     return nextUniqueIds;
   }
 
-  private static String formatString(long key, int length) {
-    String value = String.valueOf(key);
-    if (value.length() < length) {
-      DecimalFormat format = getDecimalFormat();
-      return format.format(key);
-    } else {
-      return value.substring(value.length() - length);
+  private long loadSegment(String compositeKey, long delta) {
+    long start = startTime();
+    Long max = redisHandler.getRedisTemplate().opsForValue().increment(compositeKey, delta);
+    if (start != 0L) {
+      idGeneratorMetrics
+        .recordSegmentLoad(IdGeneratorMetrics.BACKEND_REDIS, System.nanoTime() - start);
+      idGeneratorMetrics.recordRoundTrips(IdGeneratorMetrics.BACKEND_REDIS, 1, 0);
     }
-  }
 
-  private static volatile Map<String, DecimalFormat> decimalFormatMap = new ConcurrentHashMap<String, DecimalFormat>();
+    return max;
+  }
 
-  private static DecimalFormat getDecimalFormat() {
-    DecimalFormat decimalFormat = decimalFormatMap.get(RedisIdGeneratorImpl.DECIMAL_FORMAT);
-    if (decimalFormat == null) {
-      DecimalFormat newDecimalFormat = new DecimalFormat();
-      newDecimalFormat.applyPattern(RedisIdGeneratorImpl.DECIMAL_FORMAT);
-      decimalFormat = decimalFormatMap
-        .putIfAbsent(RedisIdGeneratorImpl.DECIMAL_FORMAT, newDecimalFormat);
-      if (decimalFormat == null) {
-        decimalFormat = newDecimalFormat;
-      }
+  /**
+   * 获取Key对应的号段缓冲，递增值变化时丢弃旧号段，剩余序号作废(只产生空洞，不会重复)
+   * <p>同一Key应始终使用相同的递增值；不同调用方交替使用不同递增值时每次都会重建号段并访问Redis，
+   * 比不使用号段更慢</p>
+   */
+  private SegmentBuffer getSegmentBuffer(String compositeKey, int step) {
+    SegmentBuffer segmentBuffer = segmentBufferMap.get(compositeKey);
+    if (segmentBuffer != null && segmentBuffer.getStep() == step) {
+      return segmentBuffer;
     }
 
-    return decimalFormat;
+    // 并发时只有一个号段缓冲生效，不会丢弃其他线程刚安装的号段
+    return segmentBufferMap.compute(compositeKey,
+      (key, current) -> current != null && current.getStep() == step ? current
+        : newSegmentBuffer(compositeKey, step));
+  }
+
+  private SegmentBuffer newSegmentBuffer(String compositeKey, int step) {
+    SegmentProperties segmentProperties = redisIdGeneratorProperties.getSegment();
+    return new SegmentBuffer(compositeKey, step, segmentProperties.getSize(),
+      segmentProperties.getPrefetchPercent(), delta -> loadSegment(compositeKey, delta),
+      segmentExecutor);
   }
 }
@@ -0,0 +1,174 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.id.generator.segment;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+
+/**
+ * 号段双缓冲（leaf-style）
+ * <p>每次通过 loader 原子地把计数器增加 step * size，得到一个号段 [max - step * size + step, max]，在本地按 step 分配；
+ * 当前号段消耗达到预取阈值时，异步加载下一个号段，当前号段耗尽时直接切换，使远程调用不出现在请求路径上</p>
+ * <p>loader 与存储无关，Redis(INCRBY) 与 Zookeeper(版本号CAS) 共用</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class SegmentBuffer {
+
+  private final String key;
+  private final int step;
+  private final int size;
+  private final int prefetchPercent;
+  private final LongUnaryOperator loader;
+  private final Executor executor;
+
+  private volatile Segment current;
+  private volatile Segment next;
+  private final AtomicBoolean loading = new AtomicBoolean(false);
+
+  /**
+   * 构造方法
+   *
+   * @param key 资源Key
+   * @param step 递增值
+   * @param size 号段包含的序号个数
+   * @param prefetchPercent 预取阈值(百分比)
+   * @param loader 号段加载器，入参为增量，返回增加后的计数器值
+   * @param executor 异步预取的执行器
+   */
+  public SegmentBuffer(String key, int step, int size, int prefetchPercent,
+    LongUnaryOperator loader, Executor executor) {
+    if (step <= 0) {
+      throw ExceptionUtils.get(String.format("Step can't be less than 1, key: %s", key));
+    }
+
+    if (size <= 0) {
+      throw ExceptionUtils.get(String.format("Segment size can't be less than 1, key: %s", key));
+    }
+
+    this.key = key;
+    this.step = step;
+    this.size = size;
+    this.prefetchPercent = Math.max(0, Math.min(prefetchPercent, 100));
+    this.loader = loader;
+    this.executor = executor;
+  }
+
+  public int getStep() {
+    return step;
+  }
+
+  /**
+   * 获取下一个序号 (该方法是线程安全的)
+   *
+   * @return long
+   */
+  public long nextValue() {
+    for (; ; ) {
+      Segment segment = current;
+      if (segment != null) {
+        long value = segment.cursor.getAndAdd(step);
+        if (value <= segment.max) {
+          if (value >= segment.threshold && next == null) {
+            prefetch();
+          }
+
+          return value;
+        }
+      }
+
+      switchSegment(segment);
+    }
+  }
+
+  /**
+   * 当前号段耗尽，切换到预取的号段；没有预取好的号段时同步加载
+   *
+   * @param exhausted 已耗尽的号段
+   */
+  private synchronized void switchSegment(Segment exhausted) {
+    if (current != exhausted) {
+      // 其他线程已经切换过
+      return;
+    }
+
+    Segment prefetched = next;
+    if (prefetched != null) {
+      next = null;
+      current = prefetched;
+    } else {
+      current = load();
+    }
+  }
+
+  /**
+   * 异步预取下一个号段，同一时刻只有一个预取任务
+   */
+  private void prefetch() {
+    if (!loading.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      executor.execute(() -> {
+        try {
+          Segment segment = load();
+          synchronized (this) {
+            // 预取期间可能已同步加载了更新的号段，丢弃较旧的号段以保持趋势递增
+            Segment active = current;
+            if (next == null && (active == null || segment.max > active.max)) {
+              next = segment;
+            }
+          }
+        } catch (Exception e) {
+          log.error("Prefetch segment failed, key: {}", key, e);
+        } finally {
+          loading.set(false);
+        }
+      });
+    } catch (Exception e) {
+      loading.set(false);
+      log.error("Submit segment prefetch failed, key: {}", key, e);
+    }
+  }
+
+  private Segment load() {
+    long delta = (long) step * size;
+    long max = loader.applyAsLong(delta);
+    return new Segment(max - delta + step, max,
+      max - delta + step + delta * prefetchPercent / 100);
+  }
+
+  /**
+   * 号段
+   */
+  private static class Segment {
+
+    private final AtomicLong cursor; // 下一个待分配的序号
+    private final long max; // 号段内最大的序号
+    private final long threshold; // 分配到该序号时触发预取
+
+    private Segment(long min, long max, long threshold) {
+      this.cursor = new AtomicLong(min);
+      this.max = max;
+      this.threshold = threshold;
+    }
+  }
+}
@@ -66,6 +66,9 @@ public interface CuratorHandler {
   // 创建路径，并写入数据
   public void createPath(String path, byte[] data, CreateMode mode) throws Exception;
 
+  // 确保路径存在，不存在则创建，已存在则忽略；已确认的路径缓存在本地，会话丢失时失效
+  public void ensurePath(String path, CreateMode mode) throws Exception;
+
   // 删除路径
   public void deletePath(String path) throws Exception;
 
@@ -15,6 +15,8 @@ package net.dragonshard.dsf.id.generator.zookeeper.handler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import net.dragonshard.dsf.id.generator.configuration.property.ZookeeperIdGeneratorProperties;
@@ -26,6 +28,7 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.api.ExistsBuilder;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.retry.BoundedExponentialBackoffRetry;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.retry.RetryForever;
@@ -33,6 +36,7 @@ import org.apache.curator.retry.RetryNTimes;
 import org.apache.curator.retry.RetryUntilElapsed;
 import org.apache.curator.utils.PathUtils;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +50,8 @@ public class CuratorHandlerImpl implements CuratorHandler {
   private ZookeeperIdGeneratorProperties zookeeperIdGeneratorProperties;
 
   private CuratorFramework curator;
+  // 已确认存在的路径
+  private final Set<String> knownPaths = ConcurrentHashMap.newKeySet();
 
   // 创建Curator，并初始化根节点
   @PostConstruct
@@ -54,9 +60,7 @@ public class CuratorHandlerImpl implements CuratorHandler {
       create();
 
       String rootPath = getRootPath(zookeeperIdGeneratorProperties.getPrefix());
-      if (!pathExist(rootPath)) {
-        createPath(rootPath, CreateMode.PERSISTENT);
-      }
+      ensurePath(rootPath, CreateMode.PERSISTENT);
     } catch (Exception e) {
       LOG.error("Initialize Curator failed", e);
 
@@ -172,6 +176,13 @@ public class CuratorHandlerImpl implements CuratorHandler {
 
     curator = CuratorFrameworkFactory
       .newClient(connectString, sessionTimeoutMs, connectionTimeoutMs, retryPolicy);
+    curator.getConnectionStateListenable().addListener((client, newState) -> {
+      if (newState == ConnectionState.LOST) {
+        // 会话丢失，节点可能已被删除或重建，缓存失效
+        LOG.warn("Curator connection lost, clear {} known paths", knownPaths.size());
+        knownPaths.clear();
+      }
+    });
   }
 
   // 启动ZooKeeper客户端
@@ -316,6 +327,25 @@ public class CuratorHandlerImpl implements CuratorHandler {
     curator.create().creatingParentsIfNeeded().withMode(mode).forPath(path, data);
   }
 
+  // 确保路径存在，不存在则创建，已存在则忽略
+  @Override
+  public void ensurePath(String path, CreateMode mode) throws Exception {
+    if (knownPaths.contains(path)) {
+      return;
+    }
+
+    validateStartedStatus();
+    PathUtils.validatePath(path);
+
+    try {
+      curator.create().creatingParentsIfNeeded().withMode(mode).forPath(path, null);
+    } catch (KeeperException.NodeExistsException e) {
+      // 已存在或被并发创建，视为成功
+    }
+
+    knownPaths.add(path);
+  }
+
   // 删除路径
   @Override
   public void deletePath(String path) throws Exception {
@@ -323,6 +353,7 @@ public class CuratorHandlerImpl implements CuratorHandler {
     PathUtils.validatePath(path);
 
     curator.delete().deletingChildrenIfNeeded().forPath(path);
+    knownPaths.removeIf(knownPath -> knownPath.equals(path) || knownPath.startsWith(path + "/"));
   }
 
   // 获取子节点名称列表
@@ -13,16 +13,28 @@
 
 package net.dragonshard.dsf.id.generator.zookeeper.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
 import net.dragonshard.dsf.core.toolkit.KeyUtil;
 import net.dragonshard.dsf.id.generator.configuration.property.ZookeeperIdGeneratorProperties;
+import net.dragonshard.dsf.id.generator.configuration.property.zk.LeaseProperties;
+import net.dragonshard.dsf.id.generator.metrics.IdGeneratorMetrics;
+import net.dragonshard.dsf.id.generator.segment.SegmentBuffer;
 import net.dragonshard.dsf.id.generator.zookeeper.ZookeeperIdGenerator;
 import net.dragonshard.dsf.id.generator.zookeeper.handler.CuratorHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Slf4j
@@ -34,9 +46,30 @@ public class ZookeeperIdGeneratorImpl implements ZookeeperIdGenerator {
   private CuratorHandler curatorHandler;
   @Autowired
   private ZookeeperIdGeneratorProperties zookeeperIdGeneratorProperties;
+  // 区间租用模式: 每个节点一个双缓冲区间
+  private final Map<String, SegmentBuffer> leaseBufferMap = new ConcurrentHashMap<String, SegmentBuffer>();
+  private ExecutorService leaseExecutor;
+  private IdGeneratorMetrics idGeneratorMetrics = IdGeneratorMetrics.NOOP;
+
+  @Autowired(required = false)
+  public void setIdGeneratorMetrics(IdGeneratorMetrics idGeneratorMetrics) {
+    this.idGeneratorMetrics = idGeneratorMetrics;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (zookeeperIdGeneratorProperties.getLease().isEnabled()) {
+      leaseExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("dsf-zk-id-lease-%d").setDaemon(true).build());
+    }
+  }
 
   @PreDestroy
   public void destroy() {
+    if (leaseExecutor != null) {
+      leaseExecutor.shutdownNow();
+    }
+
     try {
       curatorHandler.close();
     } catch (Exception e) {
@@ -66,39 +99,121 @@ public class ZookeeperIdGeneratorImpl implements ZookeeperIdGenerator {
       throw ExceptionUtils.get("Composite key is null or empty");
     }
 
+    long start = startTime();
+    String nextSequenceId = doNextSequenceId(compositeKey);
+    recordLatency(IdGeneratorMetrics.OPERATION_SINGLE, start);
+
+    return nextSequenceId;
+  }
+
+  private String doNextSequenceId(String compositeKey) throws Exception {
     curatorHandler.validateStartedStatus();
 
     String path = curatorHandler.getPath(zookeeperIdGeneratorProperties.getPrefix(), compositeKey);
 
-    // 并发过快，这里会抛“节点已经存在”的错误，当节点存在时候，就不会创建，所以不必打印异常
-    try {
-      if (!curatorHandler.pathExist(path)) {
-        curatorHandler.createPath(path, CreateMode.PERSISTENT);
-      }
-    } catch (Exception e) {
-      // do nothing
+    // 已确认存在的路径不再访问Zookeeper，稳定状态下每次只有一次写操作
+    curatorHandler.ensurePath(path, CreateMode.PERSISTENT);
+
+    if (leaseExecutor != null) {
+      long nextSequenceId = getLeaseBuffer(path).nextValue();
+      recordRoundTrips(0, 1);
+      return String.valueOf(nextSequenceId);
     }
 
     CuratorFramework curator = curatorHandler.getCurator();
     int nextSequenceId = curator.setData().withVersion(-1).forPath(path, "".getBytes())
       .getVersion();
+    recordRoundTrips(1, 1);
 
     return String.valueOf(nextSequenceId);
   }
 
+  private long startTime() {
+    return idGeneratorMetrics.isEnabled() ? System.nanoTime() : 0L;
+  }
+
+  private void recordLatency(String operation, long start) {
+    if (start != 0L) {
+      idGeneratorMetrics
+        .recordLatency(IdGeneratorMetrics.BACKEND_ZOOKEEPER, operation, System.nanoTime() - start);
+    }
+  }
+
+  private void recordRoundTrips(int roundTrips, int ids) {
+    if (idGeneratorMetrics.isEnabled()) {
+      idGeneratorMetrics.recordRoundTrips(IdGeneratorMetrics.BACKEND_ZOOKEEPER, roundTrips, ids);
+    }
+  }
+
+  private SegmentBuffer getLeaseBuffer(String path) {
+    SegmentBuffer leaseBuffer = leaseBufferMap.get(path);
+    if (leaseBuffer == null) {
+      LeaseProperties leaseProperties = zookeeperIdGeneratorProperties.getLease();
+      SegmentBuffer newLeaseBuffer = new SegmentBuffer(path, 1, leaseProperties.getSize(),
+        leaseProperties.getPrefetchPercent(), delta -> lease(path, delta), leaseExecutor);
+      leaseBuffer = leaseBufferMap.putIfAbsent(path, newLeaseBuffer);
+      if (leaseBuffer == null) {
+        leaseBuffer = newLeaseBuffer;
+      }
+    }
+
+    return leaseBuffer;
+  }
+
+  /**
+   * 租用区间: 节点数据保存已分配的最大值(long)，通过版本号CAS增加 delta，版本冲突时重试
+   * <p>节点数据为空时(原按版本号计数的节点)，以当前版本号为起点，保证与已发放的序号不重复</p>
+   *
+   * @param path 节点路径
+   * @param delta 租用的序号个数
+   * @return 租用后的最大值
+   */
+  private long lease(String path, long delta) {
+    CuratorFramework curator = curatorHandler.getCurator();
+    long start = startTime();
+    int roundTrips = 0;
+    try {
+      for (; ; ) {
+        roundTrips += 2;
+        Stat stat = new Stat();
+        byte[] data = curator.getData().storingStatIn(stat).forPath(path);
+        long highWaterMark = data == null || data.length == 0 ? stat.getVersion()
+          : Long.parseLong(new String(data, StandardCharsets.UTF_8));
+        long max = highWaterMark + delta;
+        try {
+          curator.setData().withVersion(stat.getVersion())
+            .forPath(path, String.valueOf(max).getBytes(StandardCharsets.UTF_8));
+          if (start != 0L) {
+            idGeneratorMetrics.recordSegmentLoad(IdGeneratorMetrics.BACKEND_ZOOKEEPER,
+              System.nanoTime() - start);
+          }
+          return max;
+        } catch (KeeperException.BadVersionException e) {
+          // 其他实例已抢先租用，重新读取后重试
+        }
+      }
+    } catch (Exception e) {
+      throw ExceptionUtils.get(String.format("Lease sequence range failed, path: %s", path), e);
+    } finally {
+      // 每次尝试包含一次读与一次版本号CAS写
+      recordRoundTrips(roundTrips, 0);
+    }
+  }
+
   @Override
   public String[] nextSequenceIds(String name, String key, int count) throws Exception {
-    if (count <= 0 || count > MAX_BATCH_COUNT) {
-      throw ExceptionUtils
-        .get(String.format("Count can't be greater than %d or less than 0", MAX_BATCH_COUNT));
+    if (StringUtils.isEmpty(name)) {
+      throw ExceptionUtils.get("name is null or empty");
     }
 
-    String[] nextSequenceIds = new String[count];
-    for (int i = 0; i < count; i++) {
-      nextSequenceIds[i] = nextSequenceId(name, key);
+    if (StringUtils.isEmpty(key)) {
+      throw ExceptionUtils.get("key is null or empty");
     }
 
-    return nextSequenceIds;
+    String compositeKey = KeyUtil
+      .getCompositeKey(zookeeperIdGeneratorProperties.getPrefix(), name, key);
+
+    return nextSequenceIds(compositeKey, count);
   }
 
   @Override
@@ -108,10 +223,16 @@ public class ZookeeperIdGeneratorImpl implements ZookeeperIdGenerator {
         .get(String.format("Count can't be greater than %d or less than 0", MAX_BATCH_COUNT));
     }
 
+    if (StringUtils.isEmpty(compositeKey)) {
+      throw ExceptionUtils.get("Composite key is null or empty");
+    }
+
+    long start = startTime();
     String[] nextSequenceIds = new String[count];
     for (int i = 0; i < count; i++) {
-      nextSequenceIds[i] = nextSequenceId(compositeKey);
+      nextSequenceIds[i] = doNextSequenceId(compositeKey);
     }
+    recordLatency(IdGeneratorMetrics.OPERATION_BATCH, start);
 
     return nextSequenceIds;
   }
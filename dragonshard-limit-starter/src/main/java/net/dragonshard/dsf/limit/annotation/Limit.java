@@ -16,14 +16,17 @@ package net.dragonshard.dsf.limit.annotation;
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
+import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
 
 @Target({ElementType.METHOD, ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 @Documented
+@Repeatable(Limits.class)
 public @interface Limit {
 
   /**
@@ -53,4 +56,33 @@ public @interface Limit {
    * @return int
    */
   int limitCount();
+
+  /**
+   * 限流算法，默认固定窗口；本地限流时令牌桶使用 Guava RateLimiter，其余均为滑动窗口计数
+   *
+   * @return LimitAlgorithmEnum
+   */
+  LimitAlgorithmEnum algorithm() default LimitAlgorithmEnum.FIXED_WINDOW;
+
+  /**
+   * 并发限流时的最长排队时间(毫秒)，默认0不排队
+   *
+   * @return long
+   */
+  long maxWaitMillis() default 0;
+
+  /**
+   * 自适应并发限流时并发上限的下界，上界为 limitCount
+   *
+   * @return int
+   */
+  int minConcurrency() default 1;
+
+  /**
+   * Redis Cluster 的 hash tag，不为空时复合Key为 prefix:{hashTag}:name:key，优先于全局配置的 hash tag 位置；
+   * 多维度限流的各维度需使用相同的 hashTag，使所有Key落在同一槽位
+   *
+   * @return String
+   */
+  String hashTag() default "";
 }
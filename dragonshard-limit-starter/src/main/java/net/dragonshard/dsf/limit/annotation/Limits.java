@@ -0,0 +1,38 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 多个 {@link Limit} 的容器，同一方法上的多个维度(如用户、租户、全局)需全部通过才放行
+ * <p>redis 类型在一次脚本调用中检查所有维度，全部通过后才计数，拒绝时不消耗任何维度的配额；
+ * Redis Cluster 下所有维度的Key需在同一槽位，通过 {@link Limit#hashTag()} 指定相同的 hash tag</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface Limits {
+
+  Limit[] value();
+}
@@ -0,0 +1,114 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.limit.aop.ConcurrencyLimiter.Permit;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.exception.RequestReachMaxLimitException;
+import net.dragonshard.dsf.limit.local.adaptive.AdaptiveConcurrencyLimiter;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * 限流代理基类
+ * <p>并发限流与自适应并发限流的流程(获取许可、执行、归还许可)与后端无关，统一在此实现；
+ * 子类只需实现按次数的限流</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public abstract class AbstractLimitDelegate implements LimitDelegate {
+
+  @Autowired
+  private ConcurrencyLimiter concurrencyLimiter;
+  @Autowired
+  private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+  private LimitProperties limitProperties;
+
+  protected AbstractLimitDelegate(LimitProperties limitProperties) {
+    this.limitProperties = limitProperties;
+  }
+
+  @Override
+  public Object invokeConcurrent(MethodInvocation invocation, String key, int maxConcurrent,
+    long leaseMillis, long maxWaitMillis) throws Throwable {
+    Permit permit;
+    try {
+      permit = concurrencyLimiter.tryAcquire(key, maxConcurrent, leaseMillis, maxWaitMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RequestReachMaxLimitException("Interrupted while waiting for concurrency permit",
+        e);
+    } catch (Exception e) {
+      return proceedOnException(invocation, e, getExceptionMessage());
+    }
+
+    return proceedWithPermit(invocation, permit);
+  }
+
+  @Override
+  public Object invokeAdaptive(MethodInvocation invocation, String key, int minConcurrent,
+    int maxConcurrent) throws Throwable {
+    Permit permit;
+    try {
+      permit = adaptiveConcurrencyLimiter.tryAcquire(key, minConcurrent, maxConcurrent);
+    } catch (Exception e) {
+      // 自适应并发限流总是在本地执行
+      return proceedOnException(invocation, e, "Exception occurs while Limit");
+    }
+
+    return proceedWithPermit(invocation, permit);
+  }
+
+  /**
+   * 限流执行异常时，按配置忽略异常直接执行，或抛出异常
+   *
+   * @param invocation 方法调用
+   * @param e 限流执行异常
+   * @param message 日志信息
+   * @return Object
+   */
+  protected Object proceedOnException(MethodInvocation invocation, Exception e, String message)
+    throws Throwable {
+    if (limitProperties.getAop().getExceptionIgnore()) {
+      log.error(message, e);
+      return invocation.proceed();
+    } else {
+      throw e;
+    }
+  }
+
+  /**
+   * 限流执行异常时输出的日志信息
+   *
+   * @return String
+   */
+  protected String getExceptionMessage() {
+    return "Exception occurs while Limit";
+  }
+
+  private Object proceedWithPermit(MethodInvocation invocation, Permit permit) throws Throwable {
+    if (permit == null) {
+      throw new RequestReachMaxLimitException();
+    }
+
+    try {
+      return invocation.proceed();
+    } finally {
+      permit.release();
+    }
+  }
+}
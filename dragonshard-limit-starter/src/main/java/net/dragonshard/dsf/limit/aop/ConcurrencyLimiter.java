@@ -0,0 +1,45 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.aop;
+
+/**
+ * 并发限流器（舱壁），限制同一资源同时执行的调用数
+ * <p>由 {@link LimitDelegate#invokeConcurrent} 在执行前获取许可、执行后归还；本地实现见
+ * SemaphoreConcurrencyLimiterImpl，分布式实现见 RedisConcurrencyLimiterImpl</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public interface ConcurrencyLimiter {
+
+  /**
+   * 获取一个并发许可，最多等待 maxWaitMillis；获取失败返回null，成功后必须调用 {@link Permit#release()}
+   *
+   * @param compositeKey 资源复合Key
+   * @param maxConcurrent 最大并发数
+   * @param leaseMillis 许可的租约时长(毫秒)，持有者异常退出后许可在租约到期后回收，本地实现忽略
+   * @param maxWaitMillis 最长排队时间(毫秒)，0为不排队
+   * @return Permit
+   */
+  Permit tryAcquire(String compositeKey, int maxConcurrent, long leaseMillis, long maxWaitMillis)
+    throws Exception;
+
+  /**
+   * 并发许可
+   */
+  interface Permit {
+
+    void release();
+  }
+}
@@ -18,6 +18,7 @@ import com.nepxion.matrix.proxy.mode.ProxyMode;
 import com.nepxion.matrix.proxy.mode.ScanMode;
 import java.lang.annotation.Annotation;
 import net.dragonshard.dsf.limit.annotation.Limit;
+import net.dragonshard.dsf.limit.annotation.Limits;
 
 /**
  * 包扫描代理
@@ -51,7 +52,7 @@ public class LimitAutoScanProxy extends DefaultAutoScanProxy {
   @Override
   protected Class<? extends Annotation>[] getMethodAnnotations() {
     if (methodAnnotations == null) {
-      methodAnnotations = new Class[]{Limit.class};
+      methodAnnotations = new Class[]{Limit.class, Limits.class};
     }
 
     return methodAnnotations;
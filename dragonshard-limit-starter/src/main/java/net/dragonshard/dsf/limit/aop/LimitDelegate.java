@@ -13,10 +13,62 @@
 
 package net.dragonshard.dsf.limit.aop;
 
+import java.util.List;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
 import org.aopalliance.intercept.MethodInvocation;
 
 public interface LimitDelegate {
 
-  Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount)
-    throws Throwable;
+  /**
+   * 按固定时间窗口限流，等同于 {@link #invoke(MethodInvocation, String, int, int, LimitAlgorithmEnum)}
+   * 使用 {@link LimitAlgorithmEnum#FIXED_WINDOW}，保留以兼容已有的实现与调用方
+   *
+   * @param invocation 方法调用
+   * @param key 资源复合Key
+   * @param limitPeriod 给定的时间段(单位秒)
+   * @param limitCount 最多的访问限制次数
+   * @return Object
+   */
+  default Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount)
+    throws Throwable {
+    return invoke(invocation, key, limitPeriod, limitCount, LimitAlgorithmEnum.FIXED_WINDOW);
+  }
+
+  Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) throws Throwable;
+
+  /**
+   * 多维度限流: 所有维度都未超出限制才执行
+   *
+   * @param invocation 方法调用
+   * @param dimensions 限流维度
+   * @return Object
+   */
+  Object invoke(MethodInvocation invocation, List<LimitDimension> dimensions) throws Throwable;
+
+  /**
+   * 并发限流: 获取许可后执行，执行结束归还许可
+   *
+   * @param invocation 方法调用
+   * @param key 资源复合Key
+   * @param maxConcurrent 最大并发数
+   * @param leaseMillis 许可的租约时长(毫秒)
+   * @param maxWaitMillis 最长排队时间(毫秒)
+   * @return Object
+   */
+  Object invokeConcurrent(MethodInvocation invocation, String key, int maxConcurrent,
+    long leaseMillis, long maxWaitMillis) throws Throwable;
+
+  /**
+   * 自适应并发限流: 获取许可后执行，执行耗时用于调整并发上限
+   *
+   * @param invocation 方法调用
+   * @param key 资源复合Key
+   * @param minConcurrent 并发上限的下界
+   * @param maxConcurrent 并发上限的上界
+   * @return Object
+   */
+  Object invokeAdaptive(MethodInvocation invocation, String key, int minConcurrent,
+    int maxConcurrent) throws Throwable;
 }
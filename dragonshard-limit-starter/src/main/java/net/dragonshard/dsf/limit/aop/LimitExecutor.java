@@ -13,6 +13,11 @@
 
 package net.dragonshard.dsf.limit.aop;
 
+import java.util.List;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
+
 public interface LimitExecutor {
 
   /**
@@ -27,4 +32,60 @@ public interface LimitExecutor {
   boolean tryAccess(String name, String key, int limitPeriod, int limitCount) throws Exception;
 
   boolean tryAccess(String compositeKey, int limitPeriod, int limitCount) throws Exception;
+
+  /**
+   * 按指定的限流算法访问，超出限制返回false
+   *
+   * @param compositeKey 资源复合Key
+   * @param limitPeriod 给定的时间段(单位秒)
+   * @param limitCount 最多的访问限制次数
+   * @param algorithm 限流算法
+   * @return boolean
+   */
+  boolean tryAccess(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) throws Exception;
+
+  /**
+   * 多维度访问，所有维度都未超出限制才返回true
+   * <p>默认按顺序逐个检查，遇到超出限制的维度即返回，之前通过的维度已计数</p>
+   *
+   * @param dimensions 限流维度
+   * @return boolean
+   */
+  default boolean tryAccess(List<LimitDimension> dimensions) throws Exception {
+    for (LimitDimension dimension : dimensions) {
+      if (!tryAccess(dimension.getCompositeKey(), dimension.getLimitPeriod(),
+        dimension.getLimitCount(), dimension.getAlgorithm())) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * 同 {@link #tryAccess(String, int, int, LimitAlgorithmEnum)}，同时返回剩余次数与重试等待时间
+   * <p>默认只返回是否放行</p>
+   *
+   * @param compositeKey 资源复合Key
+   * @param limitPeriod 给定的时间段(单位秒)
+   * @param limitCount 最多的访问限制次数
+   * @param algorithm 限流算法
+   * @return LimitResult
+   */
+  default LimitResult tryAcquire(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) throws Exception {
+    return LimitResult.of(tryAccess(compositeKey, limitPeriod, limitCount, algorithm));
+  }
+
+  /**
+   * 同 {@link #tryAccess(List)}，同时返回剩余次数(各维度的最小值)与重试等待时间
+   * <p>默认只返回是否放行</p>
+   *
+   * @param dimensions 限流维度
+   * @return LimitResult
+   */
+  default LimitResult tryAcquire(List<LimitDimension> dimensions) throws Exception {
+    return LimitResult.of(tryAccess(dimensions));
+  }
 }
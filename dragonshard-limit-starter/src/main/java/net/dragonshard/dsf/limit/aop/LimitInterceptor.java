@@ -14,17 +14,26 @@
 package net.dragonshard.dsf.limit.aop;
 
 import com.nepxion.matrix.proxy.aop.AbstractInterceptor;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
-import net.dragonshard.dsf.core.toolkit.KeyUtil;
 import net.dragonshard.dsf.limit.annotation.Limit;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
 import org.aopalliance.intercept.MethodInvocation;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 /**
  * 拦截器
@@ -36,62 +45,142 @@ import org.springframework.beans.factory.annotation.Autowired;
 @Slf4j
 public class LimitInterceptor extends AbstractInterceptor {
 
+  private static final ParameterNameDiscoverer NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+  private static final ExpressionParser PARSER = new SpelExpressionParser();
+  // 方法上没有 @Limit
+  private static final LimitMetadata[] NONE = new LimitMetadata[0];
+
   @Autowired
   private LimitProperties limitProperties;
   @Resource
   private LimitDelegate limitDelegate;
+  // 每个方法的 @Limit 解析结果，之后的调用只需一次查找与每个维度一次表达式求值
+  private final Map<Method, LimitMetadata[]> limitMetadataMap = new ConcurrentHashMap<Method, LimitMetadata[]>();
 
   @Override
   public Object invoke(MethodInvocation invocation) throws Throwable {
-    Limit limitAnnotation = getLimitAnnotation(invocation);
-    if (limitAnnotation != null) {
-      String name = limitAnnotation.name();
-      String key = limitAnnotation.key();
-      int limitPeriod = limitAnnotation.limitPeriod();
-      int limitCount = limitAnnotation.limitCount();
-
-      return invoke(invocation, limitAnnotation, name, key, limitPeriod, limitCount);
+    LimitMetadata[] limitMetadata = getLimitMetadata(invocation.getMethod());
+    if (limitMetadata.length == 1) {
+      return invoke(invocation, limitMetadata[0]);
+    }
+
+    if (limitMetadata.length > 1) {
+      return invoke(invocation, limitMetadata);
     }
 
     return invocation.proceed();
   }
 
-  private Limit getLimitAnnotation(MethodInvocation invocation) {
-    Method method = invocation.getMethod();
-    if (method.isAnnotationPresent(Limit.class)) {
-      return method.getAnnotation(Limit.class);
+  private LimitMetadata[] getLimitMetadata(Method method) {
+    LimitMetadata[] limitMetadata = limitMetadataMap.get(method);
+    if (limitMetadata == null) {
+      limitMetadata = limitMetadataMap.computeIfAbsent(method, this::createLimitMetadata);
     }
 
-    return null;
+    return limitMetadata;
   }
 
-  private Object invoke(MethodInvocation invocation, Annotation annotation, String name, String key,
-    int limitPeriod, int limitCount) throws Throwable {
-    if (StringUtils.isEmpty(name)) {
-      throw ExceptionUtils.get("Annotation [Limit]'s name is null or empty");
+  private LimitMetadata[] createLimitMetadata(Method method) {
+    Limit[] limitAnnotations = method.getAnnotationsByType(Limit.class);
+    if (limitAnnotations.length == 0) {
+      return NONE;
     }
 
-    if (StringUtils.isEmpty(key)) {
-      throw ExceptionUtils.get("Annotation [Limit]'s key is null or empty");
+    String[] parameterNames = NAME_DISCOVERER.getParameterNames(method);
+    boolean dimensional = limitAnnotations.length > 1;
+    Set<String> dimensionIds = new HashSet<String>();
+    LimitMetadata[] limitMetadata = new LimitMetadata[limitAnnotations.length];
+    for (int i = 0; i < limitAnnotations.length; i++) {
+      Limit limit = limitAnnotations[i];
+      if (dimensional && isConcurrency(limit.algorithm())) {
+        throw ExceptionUtils.get(String.format(
+          "Annotation [Limit] with algorithm %s can not be combined with other limits, method: %s",
+          limit.algorithm(), method));
+      }
+
+      // 多维度的Key由 name、key、窗口与算法组成，四者都相同的维度会共用同一个计数
+      if (!dimensionIds.add(
+        limit.name() + "|" + limit.key() + "|" + limit.limitPeriod() + "|" + limit.algorithm())) {
+        throw ExceptionUtils.get(String.format("Duplicate annotation [Limit] with name %s, key %s, "
+            + "limitPeriod %d and algorithm %s, method: %s",
+          limit.name(), limit.key(), limit.limitPeriod(), limit.algorithm(), method));
+      }
+
+      limitMetadata[i] = new LimitMetadata(limit, limitProperties.getPrefix(),
+        limitProperties.getHashTag(), parameterNames, PARSER, dimensional);
     }
 
-    String spelKey = null;
-    try {
-      spelKey = getSpelKey(invocation, key);
-    } catch (Exception e) {
-      spelKey = key;
+    if (dimensional) {
+      validateHashTag(method, limitMetadata);
     }
-    String compositeKey = KeyUtil.getCompositeKey(limitProperties.getPrefix(), name, spelKey);
+
+    return limitMetadata;
+  }
+
+  /**
+   * 多维度在一次脚本调用中访问所有Key，使用 hash tag 时(Redis Cluster)所有维度的 tag 必须相同，否则运行时报 CROSSSLOT
+   */
+  private static void validateHashTag(Method method, LimitMetadata[] limitMetadata) {
+    String first = limitMetadata[0].getHashTagSegment();
+    for (LimitMetadata metadata : limitMetadata) {
+      String segment = metadata.getHashTagSegment();
+      if (first == null ? segment != null : !first.equals(segment)) {
+        throw ExceptionUtils.get(String.format("Keys of annotation [Limit] can not be placed in "
+            + "one Redis Cluster slot, hash tags: %s and %s, specify the same hashTag on every "
+            + "[Limit], method: %s", first, segment, method));
+      }
+    }
+  }
+
+  private static boolean isConcurrency(LimitAlgorithmEnum algorithm) {
+    return algorithm == LimitAlgorithmEnum.CONCURRENCY
+      || algorithm == LimitAlgorithmEnum.ADAPTIVE_CONCURRENCY;
+  }
+
+  private Object invoke(MethodInvocation invocation, LimitMetadata[] limitMetadata)
+    throws Throwable {
+    Object[] arguments = invocation.getArguments();
+    List<LimitDimension> dimensions = new ArrayList<LimitDimension>(limitMetadata.length);
+    for (LimitMetadata metadata : limitMetadata) {
+      dimensions.add(metadata.getDimension(arguments));
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug(
+        "Intercepted for annotation - Limits [dimensions={}, proxyType={}, proxiedClass={}, method={}]",
+        dimensions, getProxyType(invocation), getProxiedClassName(invocation),
+        getMethodName(invocation));
+    }
+
+    return limitDelegate.invoke(invocation, dimensions);
+  }
+
+  private Object invoke(MethodInvocation invocation, LimitMetadata limitMetadata)
+    throws Throwable {
+    String compositeKey = limitMetadata.getCompositeKey(invocation.getArguments());
+    int limitPeriod = limitMetadata.getLimitPeriod();
+    int limitCount = limitMetadata.getLimitCount();
+    LimitAlgorithmEnum algorithm = limitMetadata.getAlgorithm();
 
     if (log.isDebugEnabled()) {
       String proxyType = getProxyType(invocation);
       String proxiedClassName = getProxiedClassName(invocation);
       String methodName = getMethodName(invocation);
       log.debug(
-        "Intercepted for annotation - Limit [key={}, limitPeriod={}, limitCount={}, proxyType={}, proxiedClass={}, method={}]",
-        compositeKey, limitPeriod, limitCount, proxyType, proxiedClassName, methodName);
+        "Intercepted for annotation - Limit [key={}, limitPeriod={}, limitCount={}, algorithm={}, proxyType={}, proxiedClass={}, method={}]",
+        compositeKey, limitPeriod, limitCount, algorithm, proxyType, proxiedClassName, methodName);
+    }
+
+    if (algorithm == LimitAlgorithmEnum.CONCURRENCY) {
+      return limitDelegate.invokeConcurrent(invocation, compositeKey, limitCount,
+        limitPeriod * 1000L, limitMetadata.getMaxWaitMillis());
+    }
+
+    if (algorithm == LimitAlgorithmEnum.ADAPTIVE_CONCURRENCY) {
+      return limitDelegate.invokeAdaptive(invocation, compositeKey,
+        limitMetadata.getMinConcurrency(), limitCount);
     }
 
-    return limitDelegate.invoke(invocation, compositeKey, limitPeriod, limitCount);
+    return limitDelegate.invoke(invocation, compositeKey, limitPeriod, limitCount, algorithm);
   }
 }
@@ -0,0 +1,235 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.aop;
+
+import net.dragonshard.dsf.core.common.CoreConstants;
+import net.dragonshard.dsf.core.enums.KeyHashTagEnum;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+import net.dragonshard.dsf.core.toolkit.KeyUtil;
+import net.dragonshard.dsf.limit.annotation.Limit;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BeanReference;
+import org.springframework.expression.spel.ast.ConstructorReference;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.TypeReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * 方法上 @Limit 的解析结果，每个方法只解析一次
+ * <p>key 不依赖方法参数时直接缓存复合Key；否则缓存解析好的 SpEL 表达式与参数名，每次调用只做一次求值</p>
+ * <p>同一方法上有多个 @Limit 时，复合Key追加窗口与算法，使相同 name、key 的不同窗口各自计数</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+final class LimitMetadata {
+
+  private final int limitPeriod;
+  private final int limitCount;
+  private final LimitAlgorithmEnum algorithm;
+  private final long maxWaitMillis;
+  private final int minConcurrency;
+  private final String key;
+  private final String prefix;
+  private final String name;
+  private final KeyHashTagEnum hashTag;
+  // 注解上指定的 hash tag，为空时按 hashTag 位置生成
+  private final String tag;
+  // 多维度时的Key后缀，单个 @Limit 时为空串
+  private final String dimensionSuffix;
+  // key 不依赖方法参数时的复合Key
+  private final String compositeKey;
+  private final Expression expression;
+  private final String[] parameterNames;
+
+  LimitMetadata(Limit limit, String prefix, KeyHashTagEnum hashTag, String[] parameterNames,
+    ExpressionParser parser, boolean dimensional) {
+    if (StringUtils.isEmpty(limit.name())) {
+      throw ExceptionUtils.get("Annotation [Limit]'s name is null or empty");
+    }
+
+    if (StringUtils.isEmpty(limit.key())) {
+      throw ExceptionUtils.get("Annotation [Limit]'s key is null or empty");
+    }
+
+    this.limitPeriod = limit.limitPeriod();
+    this.limitCount = limit.limitCount();
+    this.algorithm = limit.algorithm();
+    this.maxWaitMillis = limit.maxWaitMillis();
+    this.minConcurrency = limit.minConcurrency();
+    this.key = limit.key();
+    this.prefix = prefix;
+    this.name = limit.name();
+    this.hashTag = hashTag;
+    this.tag = limit.hashTag();
+    this.dimensionSuffix = dimensional
+      ? KeyUtil.getCompositeKey("", limitPeriod + "s", algorithm.getValue()) : "";
+    this.parameterNames = parameterNames;
+
+    Expression parsed = null;
+    try {
+      parsed = parser.parseExpression(key);
+    } catch (Exception e) {
+      // 不是合法的表达式，原样作为Key
+    }
+
+    if (parsed != null && isDynamic(parsed)) {
+      this.expression = parsed;
+      this.compositeKey = null;
+    } else {
+      this.expression = null;
+      this.compositeKey = buildCompositeKey(evaluateConstant(parsed));
+    }
+  }
+
+  /**
+   * 表达式是否引用了方法参数、类型、Bean 或方法调用，不引用时每次求值结果相同
+   */
+  private static boolean isDynamic(Expression expression) {
+    if (!(expression instanceof SpelExpression)) {
+      return true;
+    }
+
+    return isDynamic(((SpelExpression) expression).getAST());
+  }
+
+  private static boolean isDynamic(SpelNode node) {
+    if (node instanceof VariableReference || node instanceof MethodReference
+      || node instanceof TypeReference || node instanceof ConstructorReference
+      || node instanceof BeanReference) {
+      return true;
+    }
+
+    for (int i = 0; i < node.getChildCount(); i++) {
+      if (isDynamic(node.getChild(i))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private String evaluateConstant(Expression parsed) {
+    if (parsed == null) {
+      return key;
+    }
+
+    try {
+      return parsed.getValue(new StandardEvaluationContext(), String.class);
+    } catch (Exception e) {
+      return key;
+    }
+  }
+
+  /**
+   * 按方法参数得到复合Key，求值失败时使用原始 key
+   *
+   * @param arguments 方法参数
+   * @return String
+   */
+  String getCompositeKey(Object[] arguments) {
+    if (compositeKey != null) {
+      return compositeKey;
+    }
+
+    String spelKey;
+    try {
+      EvaluationContext context = new StandardEvaluationContext();
+      if (parameterNames != null) {
+        for (int i = 0; i < parameterNames.length && i < arguments.length; i++) {
+          context.setVariable(parameterNames[i], arguments[i]);
+        }
+      }
+      spelKey = expression.getValue(context, String.class);
+    } catch (Exception e) {
+      spelKey = key;
+    }
+
+    return buildCompositeKey(spelKey);
+  }
+
+  private String buildCompositeKey(String resolvedKey) {
+    if (StringUtils.isEmpty(tag)) {
+      return KeyUtil.getCompositeKey(prefix, name, resolvedKey, hashTag) + dimensionSuffix;
+    }
+
+    return KeyUtil.getCompositeKey(prefix, KeyUtil.getHashTag(tag), name)
+      + CoreConstants.REDIS_ID_SPLIT + resolvedKey + dimensionSuffix;
+  }
+
+  /**
+   * 决定 Redis Cluster 槽位的 hash tag 内容，不加 hash tag 时返回 null
+   * <p>key 作为 tag 时返回 key 的原始表达式，表达式相同的维度求值结果相同</p>
+   *
+   * @return String
+   */
+  String getHashTagSegment() {
+    if (StringUtils.isNotEmpty(tag)) {
+      return tag;
+    }
+
+    if (hashTag == null) {
+      return null;
+    }
+
+    switch (hashTag) {
+      case PREFIX:
+        return prefix;
+      case NAME:
+        return name;
+      case KEY:
+        return key;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * 按方法参数得到限流维度
+   *
+   * @param arguments 方法参数
+   * @return LimitDimension
+   */
+  LimitDimension getDimension(Object[] arguments) {
+    return new LimitDimension(getCompositeKey(arguments), limitPeriod, limitCount, algorithm);
+  }
+
+  int getLimitPeriod() {
+    return limitPeriod;
+  }
+
+  int getLimitCount() {
+    return limitCount;
+  }
+
+  LimitAlgorithmEnum getAlgorithm() {
+    return algorithm;
+  }
+
+  long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  int getMinConcurrency() {
+    return minConcurrency;
+  }
+}
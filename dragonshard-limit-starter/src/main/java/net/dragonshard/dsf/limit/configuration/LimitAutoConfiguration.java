@@ -13,21 +13,28 @@
 
 package net.dragonshard.dsf.limit.configuration;
 
+import net.dragonshard.dsf.limit.aop.ConcurrencyLimiter;
 import net.dragonshard.dsf.limit.aop.LimitAutoScanProxy;
 import net.dragonshard.dsf.limit.aop.LimitDelegate;
 import net.dragonshard.dsf.limit.aop.LimitExecutor;
 import net.dragonshard.dsf.limit.aop.LimitInterceptor;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.local.adaptive.AdaptiveConcurrencyLimiter;
 import net.dragonshard.dsf.limit.local.condition.LocalLimitCondition;
-import net.dragonshard.dsf.limit.local.impl.GuavaLocalLimitExecutorImpl;
+import net.dragonshard.dsf.limit.local.impl.SlidingWindowLocalLimitExecutorImpl;
 import net.dragonshard.dsf.limit.local.impl.LocalLimitDelegateImpl;
+import net.dragonshard.dsf.limit.local.impl.SemaphoreConcurrencyLimiterImpl;
+import net.dragonshard.dsf.limit.redis.breaker.RedisLimitBreaker;
 import net.dragonshard.dsf.limit.redis.condition.RedisLimitCondition;
 import net.dragonshard.dsf.limit.redis.handler.RedisHandler;
 import net.dragonshard.dsf.limit.redis.handler.RedisHandlerImpl;
+import net.dragonshard.dsf.limit.redis.impl.RedisConcurrencyLimiterImpl;
+import net.dragonshard.dsf.limit.redis.impl.RedisLeaseLimitExecutorImpl;
 import net.dragonshard.dsf.limit.redis.impl.RedisLimitDelegateImpl;
 import net.dragonshard.dsf.limit.redis.impl.RedisLimitExecutorImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
@@ -63,6 +70,11 @@ public class LimitAutoConfiguration {
     return new LimitInterceptor();
   }
 
+  @Bean
+  public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter() {
+    return new AdaptiveConcurrencyLimiter(limitProperties);
+  }
+
   @Bean
   @Conditional(LocalLimitCondition.class)
   public LimitDelegate localLimitDelegate() {
@@ -72,7 +84,13 @@ public class LimitAutoConfiguration {
   @Bean
   @Conditional(LocalLimitCondition.class)
   public LimitExecutor localLimitExecutor() {
-    return new GuavaLocalLimitExecutorImpl(limitProperties);
+    return new SlidingWindowLocalLimitExecutorImpl(limitProperties);
+  }
+
+  @Bean
+  @Conditional(LocalLimitCondition.class)
+  public ConcurrencyLimiter localConcurrencyLimiter() {
+    return new SemaphoreConcurrencyLimiterImpl();
   }
 
   @Bean
@@ -84,9 +102,26 @@ public class LimitAutoConfiguration {
   @Bean
   @Conditional(RedisLimitCondition.class)
   public LimitExecutor redisLimitExecutor() {
+    if (limitProperties.getLease().isEnabled()) {
+      return new RedisLeaseLimitExecutorImpl(limitProperties);
+    }
+
     return new RedisLimitExecutorImpl(limitProperties);
   }
 
+  @Bean
+  @Conditional(RedisLimitCondition.class)
+  @ConditionalOnProperty(prefix = "dragonshard.limit.breaker", name = "enabled", havingValue = "true")
+  public RedisLimitBreaker redisLimitBreaker() {
+    return new RedisLimitBreaker(limitProperties);
+  }
+
+  @Bean
+  @Conditional(RedisLimitCondition.class)
+  public ConcurrencyLimiter redisConcurrencyLimiter() {
+    return new RedisConcurrencyLimiterImpl();
+  }
+
   @Bean
   @Conditional(RedisLimitCondition.class)
   @ConditionalOnMissingBean
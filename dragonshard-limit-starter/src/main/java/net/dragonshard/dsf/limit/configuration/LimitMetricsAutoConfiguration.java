@@ -0,0 +1,67 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import net.dragonshard.dsf.limit.aop.LimitExecutor;
+import net.dragonshard.dsf.limit.local.impl.SlidingWindowLocalLimitExecutorImpl;
+import net.dragonshard.dsf.limit.metrics.LimitMetrics;
+import net.dragonshard.dsf.limit.metrics.MicrometerLimitMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 限流指标配置
+ * <p>存在 MeterRegistry 时为限流器注入 Micrometer 指标，并绑定 local 类型限流器缓存的命中、未命中与淘汰统计</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "dragonshard.limit.metrics", name = "enabled", matchIfMissing = true)
+@AutoConfigureAfter(name = {
+  "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+  "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+  "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"})
+public class LimitMetricsAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean
+  public LimitMetrics limitMetrics(MeterRegistry meterRegistry) {
+    return new MicrometerLimitMetrics(meterRegistry);
+  }
+
+  @Bean
+  public MeterBinder localLimitCacheMetrics(ObjectProvider<LimitExecutor> limitExecutor) {
+    return registry -> limitExecutor.stream()
+      .filter(executor -> executor instanceof SlidingWindowLocalLimitExecutorImpl)
+      .map(executor -> (SlidingWindowLocalLimitExecutorImpl) executor)
+      .forEach(executor -> {
+        GuavaCacheMetrics.monitor(registry, executor.getCache(), "dsf.limit.window");
+        GuavaCacheMetrics
+          .monitor(registry, executor.getTokenBucketCache(), "dsf.limit.token-bucket");
+      });
+  }
+
+}
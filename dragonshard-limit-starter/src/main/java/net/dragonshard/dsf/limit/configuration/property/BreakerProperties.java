@@ -0,0 +1,61 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.configuration.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 熔断配置（redis）
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.limit.breaker")
+@Data
+public class BreakerProperties {
+
+  /**
+   * 是否开启, 开启后Redis连续失败或慢调用时熔断, 熔断期间使用本地限流, 默认 false
+   */
+  private boolean enabled;
+
+  /**
+   * 触发熔断的连续失败(含慢调用)次数, 默认 5
+   */
+  private int failureThreshold = 5;
+
+  /**
+   * 慢调用阈值(毫秒), 超过即计为一次失败, 0 不统计慢调用, 默认 100
+   */
+  private long slowCallMillis = 100;
+
+  /**
+   * 熔断持续时间(毫秒), 之后放行一次探测请求, 成功则恢复, 默认 5000
+   */
+  private long openMillis = 5000;
+
+  /**
+   * 集群节点数, 本地限流的 limitCount 按此均分, 0 时通过Redis心跳估算, 默认 0
+   */
+  private int nodeCount;
+
+  /**
+   * 估算节点数时的心跳间隔(毫秒), 默认 10000
+   */
+  private long heartbeatIntervalMillis = 10000;
+
+}
@@ -0,0 +1,46 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.configuration.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 许可租用配置（redis）
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.limit.lease")
+@Data
+public class LeaseProperties {
+
+  /**
+   * 是否开启, 开启后固定窗口限流每次从Redis租用一批许可在本地发放, 默认 false
+   */
+  private boolean enabled;
+
+  /**
+   * 每次租用的最大许可数, 默认 100
+   */
+  private int batchSize = 100;
+
+  /**
+   * 每次租用不超过 limitCount 的百分比, 默认 10
+   */
+  private int maxBatchPercent = 10;
+
+}
@@ -14,6 +14,7 @@
 package net.dragonshard.dsf.limit.configuration.property;
 
 import lombok.Data;
+import net.dragonshard.dsf.core.enums.KeyHashTagEnum;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
@@ -40,6 +41,12 @@ public class LimitProperties {
    */
   private String prefix = "DsfLimit";
 
+  /**
+   * Redis Cluster 的 hash tag 位置, none/prefix/name/key, 默认 none；多维度限流的所有Key需在同一槽位,
+   * 可通过 @Limit 的 hashTag 为各维度指定相同的 tag
+   */
+  private KeyHashTagEnum hashTag = KeyHashTagEnum.NONE;
+
   /**
    * 限流类型, local 或 redis
    */
@@ -48,4 +55,13 @@ public class LimitProperties {
   @NestedConfigurationProperty
   private AopProperties aop = new AopProperties();
 
+  @NestedConfigurationProperty
+  private BreakerProperties breaker = new BreakerProperties();
+
+  @NestedConfigurationProperty
+  private LeaseProperties lease = new LeaseProperties();
+
+  @NestedConfigurationProperty
+  private LocalProperties local = new LocalProperties();
+
 }
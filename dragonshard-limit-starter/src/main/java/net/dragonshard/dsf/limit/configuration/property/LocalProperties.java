@@ -0,0 +1,46 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.configuration.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地限流器缓存配置，许可租用的本地租约同样适用
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Component
+@ConfigurationProperties(prefix = "dragonshard.limit.local")
+@Data
+public class LocalProperties {
+
+  /**
+   * 最多缓存的限流器个数, 超出时淘汰最近最少使用的, 默认 10000
+   */
+  private long maximumSize = 10000L;
+
+  /**
+   * 限流器空闲多久后淘汰(秒), 默认 600
+   */
+  private long expireAfterAccessSeconds = 600L;
+
+  /**
+   * 滑动窗口的桶个数, 越多越精确, 不能整除窗口时取能整除的较小值, 默认 10
+   */
+  private int windowBuckets = 10;
+
+}
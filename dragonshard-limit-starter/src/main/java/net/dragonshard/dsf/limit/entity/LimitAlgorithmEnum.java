@@ -0,0 +1,74 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.entity;
+
+/**
+ * 限流算法
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public enum LimitAlgorithmEnum {
+
+  /**
+   * 固定窗口: INCR + EXPIRE，窗口交界处最多放行 2 倍的 limitCount
+   */
+  FIXED_WINDOW("fixedWindow"),
+  /**
+   * 滑动窗口日志: ZSET 记录窗口内每次访问的时间，精确但内存与 limitCount 成正比
+   */
+  SLIDING_LOG("slidingLog"),
+  /**
+   * 滑动窗口计数: 当前与上一个窗口的计数按时间加权估算，内存固定
+   */
+  SLIDING_WINDOW("slidingWindow"),
+  /**
+   * 令牌桶(GCRA): 按 limitPeriod / limitCount 的间隔匀速放行，允许 limitCount 的突发；
+   * local 类型使用 Guava RateLimiter，突发上限为1秒的许可数
+   */
+  TOKEN_BUCKET("tokenBucket"),
+  /**
+   * 并发(舱壁): 同时执行的调用不超过 limitCount；redis 类型以 limitPeriod 作为许可的租约时长
+   */
+  CONCURRENCY("concurrency"),
+  /**
+   * 自适应并发: 按方法耗时在 [minConcurrency, limitCount] 内自动调整并发上限(Vegas)，始终在本地计算
+   */
+  ADAPTIVE_CONCURRENCY("adaptiveConcurrency");
+
+  private String value;
+
+  private LimitAlgorithmEnum(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public static LimitAlgorithmEnum fromString(String value) {
+    for (LimitAlgorithmEnum type : LimitAlgorithmEnum.values()) {
+      if (type.getValue().equalsIgnoreCase(value.trim())) {
+        return type;
+      }
+    }
+
+    throw new IllegalArgumentException("Mismatched type with value=" + value);
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.entity;
+
+/**
+ * 限流维度: 一个 @Limit 解析后的复合Key与限流参数
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class LimitDimension {
+
+  private final String compositeKey;
+  private final int limitPeriod;
+  private final int limitCount;
+  private final LimitAlgorithmEnum algorithm;
+
+  public LimitDimension(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    this.compositeKey = compositeKey;
+    this.limitPeriod = limitPeriod;
+    this.limitCount = limitCount;
+    this.algorithm = algorithm;
+  }
+
+  public String getCompositeKey() {
+    return compositeKey;
+  }
+
+  public int getLimitPeriod() {
+    return limitPeriod;
+  }
+
+  public int getLimitCount() {
+    return limitCount;
+  }
+
+  public LimitAlgorithmEnum getAlgorithm() {
+    return algorithm;
+  }
+
+  @Override
+  public String toString() {
+    return "LimitDimension{compositeKey=" + compositeKey + ", limitPeriod=" + limitPeriod
+      + ", limitCount=" + limitCount + ", algorithm=" + algorithm + "}";
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.entity;
+
+/**
+ * 限流结果: 是否放行、剩余次数与建议的重试等待时间
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class LimitResult {
+
+  /**
+   * 剩余次数或重试时间未知
+   */
+  public static final long UNKNOWN = -1L;
+
+  private static final LimitResult ALLOWED = new LimitResult(true, UNKNOWN, 0L);
+  private static final LimitResult REJECTED = new LimitResult(false, 0L, UNKNOWN);
+
+  private final boolean allowed;
+  private final long remaining;
+  private final long retryAfterMillis;
+
+  /**
+   * 构造方法
+   *
+   * @param allowed 是否放行
+   * @param remaining 本次之后窗口内的剩余次数，未知时为 {@link #UNKNOWN}
+   * @param retryAfterMillis 拒绝时建议等待的毫秒数，放行时为0，未知时为 {@link #UNKNOWN}
+   */
+  public LimitResult(boolean allowed, long remaining, long retryAfterMillis) {
+    this.allowed = allowed;
+    this.remaining = remaining;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /**
+   * 只有是否放行的结果
+   *
+   * @param allowed 是否放行
+   * @return LimitResult
+   */
+  public static LimitResult of(boolean allowed) {
+    return allowed ? ALLOWED : REJECTED;
+  }
+
+  public boolean isAllowed() {
+    return allowed;
+  }
+
+  public long getRemaining() {
+    return remaining;
+  }
+
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "LimitResult{allowed=" + allowed + ", remaining=" + remaining + ", retryAfterMillis="
+      + retryAfterMillis + "}";
+  }
+}
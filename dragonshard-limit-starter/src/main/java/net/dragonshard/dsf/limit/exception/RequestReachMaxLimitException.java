@@ -13,14 +13,16 @@
 
 package net.dragonshard.dsf.limit.exception;
 
+import net.dragonshard.dsf.web.core.framework.exception.RateLimitException;
+
 /**
- * 请求达到上限异常
+ * 请求达到上限异常，携带的剩余次数与重试等待时间由 web 层输出为响应头
  *
  * @author mayee
  * @version v1.0
  * @date 2019-07-01
  **/
-public class RequestReachMaxLimitException extends RuntimeException {
+public class RequestReachMaxLimitException extends RateLimitException {
 
   private static final long serialVersionUID = -141175108507800840L;
 
@@ -28,6 +30,10 @@ public class RequestReachMaxLimitException extends RuntimeException {
     super();
   }
 
+  public RequestReachMaxLimitException(long remaining, long retryAfterMillis) {
+    super(remaining, retryAfterMillis);
+  }
+
   public RequestReachMaxLimitException(String message) {
     super(message);
   }
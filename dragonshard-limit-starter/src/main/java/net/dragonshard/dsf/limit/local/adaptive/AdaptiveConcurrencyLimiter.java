@@ -0,0 +1,111 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.local.adaptive;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+import net.dragonshard.dsf.limit.aop.ConcurrencyLimiter.Permit;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.configuration.property.LocalProperties;
+import net.dragonshard.dsf.limit.metrics.LimitMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+/**
+ * 自适应并发限流
+ * <p>每个Key一个 {@link VegasConcurrencyLimit}，按方法的实际耗时在 [minConcurrency, limitCount] 内调整并发上限；
+ * 上限只依据本实例的耗时，local 与 redis 类型均在本地计算，不访问 Redis</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class AdaptiveConcurrencyLimiter {
+
+  private final Cache<String, VegasConcurrencyLimit> limitCache;
+  private LimitMetrics limitMetrics = LimitMetrics.NOOP;
+
+  public AdaptiveConcurrencyLimiter(LimitProperties limitProperties) {
+    LocalProperties localProperties = limitProperties.getLocal();
+    this.limitCache = CacheBuilder.newBuilder()
+      .maximumSize(localProperties.getMaximumSize())
+      .expireAfterAccess(localProperties.getExpireAfterAccessSeconds(), TimeUnit.SECONDS)
+      .build();
+  }
+
+  @Autowired(required = false)
+  public void setLimitMetrics(LimitMetrics limitMetrics) {
+    this.limitMetrics = limitMetrics;
+  }
+
+  /**
+   * 尝试获取许可，许可归还时以持有时长作为耗时样本调整上限
+   *
+   * @param compositeKey 资源复合Key
+   * @param minLimit 并发上限的下界
+   * @param maxLimit 并发上限的上界
+   * @return 许可，超出当前上限时返回null
+   */
+  public Permit tryAcquire(String compositeKey, int minLimit, int maxLimit) {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(minLimit > 0, "@Limit parameter [ minConcurrency ] must be greater than 0");
+    Assert.isTrue(maxLimit >= minLimit,
+      "@Limit parameter [ limitCount ] must be greater than or equal to minConcurrency");
+    VegasConcurrencyLimit limit = getLimit(compositeKey, minLimit, maxLimit);
+
+    int inFlight = limit.tryAcquire();
+    if (inFlight < 0) {
+      limitMetrics.recordRejected(LimitMetrics.TYPE_LOCAL, "adaptive");
+      return null;
+    }
+
+    long start = System.nanoTime();
+    return () -> limit.release(System.nanoTime() - start, inFlight);
+  }
+
+  /**
+   * 当前的并发上限，Key不存在时返回-1
+   *
+   * @param compositeKey 资源复合Key
+   * @return int
+   */
+  public int getLimit(String compositeKey) {
+    VegasConcurrencyLimit limit = limitCache.getIfPresent(compositeKey);
+    return limit == null ? -1 : limit.getLimit();
+  }
+
+  public long size() {
+    return limitCache.size();
+  }
+
+  private VegasConcurrencyLimit getLimit(String compositeKey, int minLimit, int maxLimit) {
+    VegasConcurrencyLimit limit;
+    try {
+      limit = limitCache.get(compositeKey, () -> new VegasConcurrencyLimit(minLimit, maxLimit));
+    } catch (ExecutionException e) {
+      throw ExceptionUtils
+        .get(String.format("Create adaptive limit failed, key: %s", compositeKey), e.getCause());
+    }
+
+    if (limit.getMinLimit() != minLimit || limit.getMaxLimit() != maxLimit) {
+      // 上下界变化时重新开始估算，已持有的许可归还到旧的实例
+      limit = new VegasConcurrencyLimit(minLimit, maxLimit);
+      limitCache.put(compositeKey, limit);
+    }
+
+    return limit;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.local.adaptive;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发上限（Vegas）
+ * <p>以窗口内的最小耗时作为无排队时的目标耗时，按 上限 * (1 - 目标耗时 / 本次耗时) 估算排队数：
+ * 排队数很少时快速增加上限，较少时缓慢增加，过多时减少，结果限制在 [minLimit, maxLimit]</p>
+ * <p>并发数低于上限一半时(调用方本身并发不足)不增加上限，避免空闲时上限无限增长</p>
+ * <p>并发充足时每 {@value #PROBE_SAMPLES} 个样本探测一次目标耗时：上限减半，排队消化后的 2 * 上限 个样本中的最小耗时
+ * 作为新的目标耗时，探测期间不调整上限，使目标跟随下游的实际基线变化</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class VegasConcurrencyLimit {
+
+  private static final int INITIAL_LIMIT = 20;
+  private static final int PROBE_SAMPLES = 1000;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int limit;
+  private double estimatedLimit;
+  private long minRttNanos;
+  private long samples;
+  private long probeRemaining;
+
+  public VegasConcurrencyLimit(int minLimit, int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, INITIAL_LIMIT));
+    this.limit = (int) estimatedLimit;
+  }
+
+  /**
+   * 尝试占用一个并发
+   *
+   * @return 占用成功时返回占用后的并发数，失败返回 -1
+   */
+  public int tryAcquire() {
+    for (; ; ) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        return -1;
+      }
+
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  /**
+   * 释放并发并根据本次耗时调整上限
+   *
+   * @param rttNanos 本次耗时(纳秒)
+   * @param inFlightAtStart 占用时的并发数
+   */
+  public void release(long rttNanos, int inFlightAtStart) {
+    inFlight.decrementAndGet();
+    if (rttNanos > 0) {
+      update(rttNanos, inFlightAtStart);
+    }
+  }
+
+  private synchronized void update(long rttNanos, int inFlightAtStart) {
+    if (++samples >= PROBE_SAMPLES && inFlightAtStart * 2 >= estimatedLimit) {
+      samples = 0L;
+      estimatedLimit = Math.max(minLimit, estimatedLimit / 2);
+      limit = (int) estimatedLimit;
+      probeRemaining = 2 * limit;
+      minRttNanos = 0L;
+      return;
+    }
+
+    if (minRttNanos == 0L || rttNanos < minRttNanos) {
+      minRttNanos = rttNanos;
+    }
+
+    if (probeRemaining > 0) {
+      probeRemaining--;
+      return;
+    }
+
+    double current = estimatedLimit;
+    double log = Math.max(1, Math.log10(current));
+    double queue = Math.ceil(current * (1 - (double) minRttNanos / rttNanos));
+
+    double newLimit;
+    if (queue > 6 * log) {
+      newLimit = current - log;
+    } else if (inFlightAtStart * 2 < current) {
+      return;
+    } else if (queue <= log) {
+      newLimit = current + 6 * log;
+    } else if (queue < 3 * log) {
+      newLimit = current + log;
+    } else {
+      return;
+    }
+
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    limit = (int) estimatedLimit;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+}
@@ -13,19 +13,30 @@
 
 package net.dragonshard.dsf.limit.local.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.util.concurrent.RateLimiter;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
 import net.dragonshard.dsf.core.toolkit.KeyUtil;
 import net.dragonshard.dsf.limit.aop.LimitExecutor;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.configuration.property.LocalProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
 import org.springframework.util.Assert;
 
 /**
  * Guava限流实现类
+ * <p>限流器按Key缓存在有界的 Guava Cache 中(分段LRU)，超出容量或空闲超时后淘汰，
+ * 避免按用户、IP等SpEL Key限流时无限增长</p>
+ * <p>注意: Guava RateLimiter(SmoothBursty)最多只积累1秒的许可，突发上限为 limitCount / limitPeriod 而不是
+ * limitCount。例如 limitPeriod=60, limitCount=1000 时约为每秒放行 16.7 次，空闲后也不能一次放行 1000 次，
+ * 比 redis 类型的令牌桶(GCRA)更严格</p>
  *
  * @author mayee
  * @version v1.0
@@ -36,52 +47,96 @@ public class GuavaLocalLimitExecutorImpl implements LimitExecutor {
 
   private LimitProperties limitProperties;
 
+  private final Cache<String, RateLimiterEntity> rateLimiterEntityCache;
+
   public GuavaLocalLimitExecutorImpl(LimitProperties limitProperties) {
     this.limitProperties = limitProperties;
+    LocalProperties localProperties = limitProperties.getLocal();
+    this.rateLimiterEntityCache = CacheBuilder.newBuilder()
+      .maximumSize(localProperties.getMaximumSize())
+      .expireAfterAccess(localProperties.getExpireAfterAccessSeconds(), TimeUnit.SECONDS)
+      .recordStats()
+      .build();
   }
 
-  private volatile Map<String, RateLimiterEntity> rateLimiterEntityMap = new ConcurrentHashMap<String, RateLimiterEntity>();
-
   @Override
   public boolean tryAccess(String name, String key, int limitPeriod, int limitCount) {
     Assert.hasText(name, "@Limit parameter [ name ] is null or empty");
     Assert.hasText(key, "@Limit parameter [ key ] is null or empty");
-    String compositeKey = KeyUtil.getCompositeKey(limitProperties.getPrefix(), name, key);
+    String compositeKey = KeyUtil
+      .getCompositeKey(limitProperties.getPrefix(), name, key, limitProperties.getHashTag());
     return tryAccess(compositeKey, limitPeriod, limitCount);
   }
 
   @Override
   public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount) {
     Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
-    Assert.isTrue(limitPeriod == 1,
-      "@Limit parameter [ limitPeriod ] must be 1 second for Guava rate limiter");
-    RateLimiterEntity rateLimiterEntity = getRateLimiterEntity(compositeKey, limitCount);
+    Assert.isTrue(limitPeriod > 0 && limitCount > 0,
+      "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
+    // 每秒发放 limitCount / limitPeriod 个许可
+    RateLimiterEntity rateLimiterEntity = getRateLimiterEntity(compositeKey,
+      (double) limitCount / limitPeriod);
     return rateLimiterEntity.getRateLimiter().tryAcquire();
   }
 
+  /**
+   * Guava RateLimiter 即令牌桶，忽略 algorithm
+   */
+  @Override
+  public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    return tryAccess(compositeKey, limitPeriod, limitCount);
+  }
+
   private RateLimiterEntity getRateLimiterEntity(String compositeKey, double rate) {
-    RateLimiterEntity rateLimiterEntity = rateLimiterEntityMap.get(compositeKey);
-    if (rateLimiterEntity == null) {
-      RateLimiter newRateLimiter = RateLimiter.create(rate);
-
-      RateLimiterEntity newRateLimiterEntity = new RateLimiterEntity();
-      newRateLimiterEntity.setRateLimiter(newRateLimiter);
-      newRateLimiterEntity.setRate(rate);
-
-      rateLimiterEntity = rateLimiterEntityMap.putIfAbsent(compositeKey, newRateLimiterEntity);
-      if (rateLimiterEntity == null) {
-        rateLimiterEntity = newRateLimiterEntity;
-      }
-    } else {
-      if (rateLimiterEntity.getRate() != rate) {
-        rateLimiterEntity.getRateLimiter().setRate(rate);
-        rateLimiterEntity.setRate(rate);
-      }
+    RateLimiterEntity rateLimiterEntity;
+    try {
+      rateLimiterEntity = rateLimiterEntityCache.get(compositeKey, () -> {
+        RateLimiterEntity newRateLimiterEntity = new RateLimiterEntity();
+        newRateLimiterEntity.setRateLimiter(RateLimiter.create(rate));
+        newRateLimiterEntity.setRate(rate);
+        return newRateLimiterEntity;
+      });
+    } catch (ExecutionException e) {
+      throw ExceptionUtils
+        .get(String.format("Create rate limiter failed, key: %s", compositeKey), e.getCause());
+    }
+
+    if (rateLimiterEntity.getRate() != rate) {
+      rateLimiterEntity.getRateLimiter().setRate(rate);
+      rateLimiterEntity.setRate(rate);
     }
 
     return rateLimiterEntity;
   }
 
+  /**
+   * 限流器缓存的命中、未命中与淘汰统计
+   *
+   * @return CacheStats
+   */
+  public CacheStats getStats() {
+    return rateLimiterEntityCache.stats();
+  }
+
+  /**
+   * 限流器缓存，用于绑定缓存指标
+   *
+   * @return Cache
+   */
+  public Cache<String, ?> getCache() {
+    return rateLimiterEntityCache;
+  }
+
+  /**
+   * 当前缓存的限流器个数(近似值)
+   *
+   * @return long
+   */
+  public long size() {
+    return rateLimiterEntityCache.size();
+  }
+
   /**
    * 因为 rateLimiter.setRate(permitsPerSecond)会执行一次synchronized 为避免不必要的同步，故通过RateLimiterEntity去封装，做一定的冗余设计
    */
@@ -13,44 +13,64 @@
 
 package net.dragonshard.dsf.limit.local.impl;
 
-import lombok.extern.slf4j.Slf4j;
-import net.dragonshard.dsf.limit.aop.LimitDelegate;
+import java.util.List;
+import net.dragonshard.dsf.limit.aop.AbstractLimitDelegate;
 import net.dragonshard.dsf.limit.aop.LimitExecutor;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
 import net.dragonshard.dsf.limit.exception.RequestReachMaxLimitException;
+import net.dragonshard.dsf.web.core.framework.util.RateLimitUtils;
 import org.aopalliance.intercept.MethodInvocation;
 import org.springframework.beans.factory.annotation.Autowired;
 
-@Slf4j
-public class LocalLimitDelegateImpl implements LimitDelegate {
+public class LocalLimitDelegateImpl extends AbstractLimitDelegate {
 
   @Autowired
   private LimitExecutor limitExecutor;
-  private LimitProperties limitProperties;
 
   public LocalLimitDelegateImpl(LimitProperties limitProperties) {
-    this.limitProperties = limitProperties;
+    super(limitProperties);
   }
 
   @Override
-  public Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount)
+  public Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) throws Throwable {
+    LimitResult result;
+    try {
+      result = limitExecutor.tryAcquire(key, limitPeriod, limitCount, algorithm);
+    } catch (Exception e) {
+      return proceedOnException(invocation, e, getExceptionMessage());
+    }
+
+    if (result.isAllowed()) {
+      // 放行时同样输出剩余次数
+      RateLimitUtils.setHeaders(result.getRemaining(), result.getRetryAfterMillis());
+      return invocation.proceed();
+    } else {
+      throw new RequestReachMaxLimitException(result.getRemaining(),
+        result.getRetryAfterMillis());
+    }
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation, List<LimitDimension> dimensions)
     throws Throwable {
-    boolean status = true;
+    LimitResult result;
     try {
-      status = limitExecutor.tryAccess(key, limitPeriod, limitCount);
+      result = limitExecutor.tryAcquire(dimensions);
     } catch (Exception e) {
-      if (limitProperties.getAop().getExceptionIgnore()) {
-        log.error("Exception occurs while Limit", e);
-        return invocation.proceed();
-      } else {
-        throw e;
-      }
+      return proceedOnException(invocation, e, getExceptionMessage());
     }
 
-    if (status) {
+    if (result.isAllowed()) {
+      // 放行时同样输出剩余次数
+      RateLimitUtils.setHeaders(result.getRemaining(), result.getRetryAfterMillis());
       return invocation.proceed();
     } else {
-      throw new RequestReachMaxLimitException();
+      throw new RequestReachMaxLimitException(result.getRemaining(),
+        result.getRetryAfterMillis());
     }
   }
 }
@@ -0,0 +1,151 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.local.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.limit.aop.ConcurrencyLimiter;
+import net.dragonshard.dsf.limit.metrics.LimitMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+/**
+ * 并发限流实现类（local）
+ * <p>每个Key一个 Semaphore，只在有请求持有或等待许可时保存，最后一个请求离开时移除。空闲的 Semaphore
+ * 与新建的等价，所以不需要缓存淘汰，数量只与正在执行的请求数有关，持有许可期间不会被替换</p>
+ * <p>上限变化时原地调整许可数，已持有的许可照常归还，不会超出新的上限</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class SemaphoreConcurrencyLimiterImpl implements ConcurrencyLimiter {
+
+  private final ConcurrentMap<String, SemaphoreEntity> semaphoreEntityMap = new ConcurrentHashMap<String, SemaphoreEntity>();
+  private LimitMetrics limitMetrics = LimitMetrics.NOOP;
+
+  @Autowired(required = false)
+  public void setLimitMetrics(LimitMetrics limitMetrics) {
+    this.limitMetrics = limitMetrics;
+  }
+
+  @Override
+  public Permit tryAcquire(String compositeKey, int maxConcurrent, long leaseMillis,
+    long maxWaitMillis) throws InterruptedException {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(maxConcurrent > 0, "@Limit parameter [ limitCount ] must be greater than 0");
+    SemaphoreEntity semaphoreEntity = retain(compositeKey, maxConcurrent);
+
+    boolean acquired = false;
+    try {
+      if (maxWaitMillis > 0) {
+        long start = System.nanoTime();
+        acquired = semaphoreEntity.semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        limitMetrics.recordQueued(LimitMetrics.TYPE_LOCAL, System.nanoTime() - start);
+      } else {
+        acquired = semaphoreEntity.semaphore.tryAcquire();
+      }
+    } finally {
+      if (!acquired) {
+        unretain(compositeKey, semaphoreEntity);
+      }
+    }
+
+    if (!acquired) {
+      limitMetrics.recordRejected(LimitMetrics.TYPE_LOCAL, "concurrency");
+      return null;
+    }
+
+    AtomicBoolean released = new AtomicBoolean(false);
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        semaphoreEntity.semaphore.release();
+        unretain(compositeKey, semaphoreEntity);
+      }
+    };
+  }
+
+  /**
+   * 登记一个持有或等待许可的请求，Key不存在时新建，上限变化时原地调整
+   */
+  private SemaphoreEntity retain(String compositeKey, int maxConcurrent) {
+    return semaphoreEntityMap.compute(compositeKey, (key, semaphoreEntity) -> {
+      if (semaphoreEntity == null) {
+        semaphoreEntity = new SemaphoreEntity(maxConcurrent);
+      } else if (semaphoreEntity.maxConcurrent != maxConcurrent) {
+        semaphoreEntity.resize(maxConcurrent);
+      }
+
+      semaphoreEntity.users++;
+      return semaphoreEntity;
+    });
+  }
+
+  /**
+   * 注销一个请求，没有请求时移除该Key
+   */
+  private void unretain(String compositeKey, SemaphoreEntity semaphoreEntity) {
+    semaphoreEntityMap.computeIfPresent(compositeKey, (key, current) -> {
+      if (current != semaphoreEntity) {
+        return current;
+      }
+
+      return --current.users == 0 ? null : current;
+    });
+  }
+
+  /**
+   * users 与 maxConcurrent 只在 ConcurrentHashMap.compute 中读写，由该Key的锁保证可见性
+   */
+  private static class SemaphoreEntity {
+
+    private final AdjustableSemaphore semaphore;
+    private int maxConcurrent;
+    private int users;
+
+    SemaphoreEntity(int maxConcurrent) {
+      this.maxConcurrent = maxConcurrent;
+      this.semaphore = new AdjustableSemaphore(maxConcurrent);
+    }
+
+    void resize(int newMaxConcurrent) {
+      int delta = newMaxConcurrent - maxConcurrent;
+      if (delta > 0) {
+        semaphore.release(delta);
+      } else {
+        // 可用许可可能变为负数，已持有的许可归还后才放行新的请求
+        semaphore.reducePermits(-delta);
+      }
+      maxConcurrent = newMaxConcurrent;
+    }
+  }
+
+  private static class AdjustableSemaphore extends Semaphore {
+
+    private static final long serialVersionUID = 3284756210943877731L;
+
+    AdjustableSemaphore(int permits) {
+      super(permits);
+    }
+
+    @Override
+    protected void reducePermits(int reduction) {
+      super.reducePermits(reduction);
+    }
+  }
+}
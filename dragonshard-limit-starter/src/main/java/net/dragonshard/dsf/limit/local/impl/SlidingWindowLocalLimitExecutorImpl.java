@@ -0,0 +1,249 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.local.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+import net.dragonshard.dsf.core.toolkit.KeyUtil;
+import net.dragonshard.dsf.limit.aop.LimitExecutor;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.configuration.property.LocalProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
+import net.dragonshard.dsf.limit.local.window.SlidingWindowCounter;
+import org.springframework.util.Assert;
+
+/**
+ * 滑动窗口限流实现类（local）
+ * <p>按 limitPeriod 内最多 limitCount 次计数，与 redis 类型的语义一致；计数器无锁，缓存方式同
+ * {@link GuavaLocalLimitExecutorImpl}。令牌桶算法交给 {@link GuavaLocalLimitExecutorImpl}</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class SlidingWindowLocalLimitExecutorImpl implements LimitExecutor {
+
+  private LimitProperties limitProperties;
+  private final GuavaLocalLimitExecutorImpl tokenBucketExecutor;
+  private final Cache<String, SlidingWindowCounter> counterCache;
+
+  public SlidingWindowLocalLimitExecutorImpl(LimitProperties limitProperties) {
+    this.limitProperties = limitProperties;
+    this.tokenBucketExecutor = new GuavaLocalLimitExecutorImpl(limitProperties);
+    LocalProperties localProperties = limitProperties.getLocal();
+    this.counterCache = CacheBuilder.newBuilder()
+      .maximumSize(localProperties.getMaximumSize())
+      .expireAfterAccess(localProperties.getExpireAfterAccessSeconds(), TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  @Override
+  public boolean tryAccess(String name, String key, int limitPeriod, int limitCount) {
+    Assert.hasText(name, "@Limit parameter [ name ] is null or empty");
+    Assert.hasText(key, "@Limit parameter [ key ] is null or empty");
+    String compositeKey = KeyUtil
+      .getCompositeKey(limitProperties.getPrefix(), name, key, limitProperties.getHashTag());
+    return tryAccess(compositeKey, limitPeriod, limitCount);
+  }
+
+  @Override
+  public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount) {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(limitPeriod > 0 && limitCount > 0,
+      "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
+    return getCounter(compositeKey, limitPeriod * 1000L).tryAcquire(limitCount);
+  }
+
+  @Override
+  public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    if (algorithm == LimitAlgorithmEnum.TOKEN_BUCKET) {
+      return tokenBucketExecutor.tryAccess(compositeKey, limitPeriod, limitCount);
+    }
+
+    return tryAccess(compositeKey, limitPeriod, limitCount);
+  }
+
+  /**
+   * 拒绝时以窗口内最早的计数移出窗口的时间作为重试等待时间；令牌桶按一个发放间隔估算
+   */
+  @Override
+  public LimitResult tryAcquire(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    if (algorithm == LimitAlgorithmEnum.TOKEN_BUCKET) {
+      if (tokenBucketExecutor.tryAccess(compositeKey, limitPeriod, limitCount)) {
+        return LimitResult.of(true);
+      }
+
+      return new LimitResult(false, 0L, getTokenInterval(limitPeriod, limitCount));
+    }
+
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(limitPeriod > 0 && limitCount > 0,
+      "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
+    long now = System.currentTimeMillis();
+    SlidingWindowCounter counter = getCounter(compositeKey, limitPeriod * 1000L);
+    long remaining = counter.acquire(limitCount, now);
+    if (remaining >= 0) {
+      return new LimitResult(true, remaining, 0L);
+    }
+
+    long retryAfterMillis = counter.millisUntilRelease(now);
+    return new LimitResult(false, 0L,
+      retryAfterMillis > 0 ? retryAfterMillis : LimitResult.UNKNOWN);
+  }
+
+  @Override
+  public boolean tryAccess(List<LimitDimension> dimensions) {
+    return tryAcquire(dimensions).isAllowed();
+  }
+
+  /**
+   * 多维度: 先逐个检查并计数滑动窗口维度，任一维度拒绝时撤销已计数的维度，不消耗任何维度的配额
+   * <p>Guava RateLimiter 发放的许可无法归还，令牌桶维度放在所有滑动窗口维度之后获取；
+   * 同一方法有多个令牌桶维度时，后面的令牌桶拒绝不会归还前面令牌桶已发放的许可</p>
+   */
+  @Override
+  public LimitResult tryAcquire(List<LimitDimension> dimensions) {
+    long now = System.currentTimeMillis();
+    List<SlidingWindowCounter> acquired = new ArrayList<SlidingWindowCounter>(dimensions.size());
+    long remaining = Long.MAX_VALUE;
+    for (LimitDimension dimension : dimensions) {
+      if (dimension.getAlgorithm() == LimitAlgorithmEnum.TOKEN_BUCKET) {
+        continue;
+      }
+
+      Assert.hasText(dimension.getCompositeKey(),
+        "@Limit parameter [ composite key ] is null or empty");
+      Assert.isTrue(dimension.getLimitPeriod() > 0 && dimension.getLimitCount() > 0,
+        "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
+      SlidingWindowCounter counter = getCounter(dimension.getCompositeKey(),
+        dimension.getLimitPeriod() * 1000L);
+      long left = counter.acquire(dimension.getLimitCount(), now);
+      if (left < 0) {
+        release(acquired, now);
+        long retryAfterMillis = counter.millisUntilRelease(now);
+        return new LimitResult(false, 0L,
+          retryAfterMillis > 0 ? retryAfterMillis : LimitResult.UNKNOWN);
+      }
+
+      acquired.add(counter);
+      remaining = Math.min(remaining, left);
+    }
+
+    for (LimitDimension dimension : dimensions) {
+      if (dimension.getAlgorithm() == LimitAlgorithmEnum.TOKEN_BUCKET && !tokenBucketExecutor
+        .tryAccess(dimension.getCompositeKey(), dimension.getLimitPeriod(),
+          dimension.getLimitCount())) {
+        release(acquired, now);
+        return new LimitResult(false, 0L,
+          getTokenInterval(dimension.getLimitPeriod(), dimension.getLimitCount()));
+      }
+    }
+
+    return new LimitResult(true, remaining == Long.MAX_VALUE ? LimitResult.UNKNOWN : remaining,
+      0L);
+  }
+
+  private static void release(List<SlidingWindowCounter> acquired, long now) {
+    for (SlidingWindowCounter counter : acquired) {
+      counter.release(now);
+    }
+  }
+
+  /**
+   * 令牌桶的发放间隔(毫秒)，向上取整
+   */
+  private static long getTokenInterval(int limitPeriod, int limitCount) {
+    return (limitPeriod * 1000L + limitCount - 1) / limitCount;
+  }
+
+  private SlidingWindowCounter getCounter(String compositeKey, long periodMillis) {
+    SlidingWindowCounter counter;
+    try {
+      counter = counterCache.get(compositeKey, () -> newCounter(periodMillis));
+    } catch (ExecutionException e) {
+      throw ExceptionUtils
+        .get(String.format("Create sliding window counter failed, key: %s", compositeKey),
+          e.getCause());
+    }
+
+    if (counter.getPeriodMillis() != periodMillis) {
+      // 窗口变化时重新计数
+      counter = newCounter(periodMillis);
+      counterCache.put(compositeKey, counter);
+    }
+
+    return counter;
+  }
+
+  private SlidingWindowCounter newCounter(long periodMillis) {
+    return new SlidingWindowCounter(periodMillis, limitProperties.getLocal().getWindowBuckets());
+  }
+
+  /**
+   * 计数器缓存的命中、未命中与淘汰统计
+   *
+   * @return CacheStats
+   */
+  public CacheStats getStats() {
+    return counterCache.stats();
+  }
+
+  /**
+   * 令牌桶限流器缓存的统计
+   *
+   * @return CacheStats
+   */
+  public CacheStats getTokenBucketStats() {
+    return tokenBucketExecutor.getStats();
+  }
+
+  /**
+   * 计数器缓存，用于绑定缓存指标
+   *
+   * @return Cache
+   */
+  public Cache<String, ?> getCache() {
+    return counterCache;
+  }
+
+  /**
+   * 令牌桶限流器缓存，用于绑定缓存指标
+   *
+   * @return Cache
+   */
+  public Cache<String, ?> getTokenBucketCache() {
+    return tokenBucketExecutor.getCache();
+  }
+
+  /**
+   * 当前缓存的计数器个数(近似值)
+   *
+   * @return long
+   */
+  public long size() {
+    return counterCache.size();
+  }
+}
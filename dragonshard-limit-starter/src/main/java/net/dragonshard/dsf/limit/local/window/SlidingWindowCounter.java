@@ -0,0 +1,193 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.local.window;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+
+/**
+ * 无锁滑动窗口计数器
+ * <p>把窗口均分成 N 个桶组成环形数组，每个桶是一个 long：高32位为桶编号(时间 / 桶宽度)，低32位为计数，
+ * 桶过期与计数通过同一次 CAS 完成。窗口内的访问次数为最近 N 个桶的计数之和，精度为一个桶的宽度</p>
+ * <p>先计数再检查总数，超出时撤销本次计数，所以并发下不会多放行，只可能少放行</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class SlidingWindowCounter {
+
+  private static final long COUNT_MASK = 0xFFFFFFFFL;
+  // 桶编号只保留低32位，超前超过该值的桶视为很久以前的桶而不是未来的桶
+  private static final int MAX_LEAD = 1 << 30;
+
+  private final long periodMillis;
+  private final int buckets;
+  private final long bucketMillis;
+  private final AtomicLongArray states;
+
+  /**
+   * 构造方法
+   *
+   * @param periodMillis 窗口(毫秒)
+   * @param buckets 桶个数
+   */
+  public SlidingWindowCounter(long periodMillis, int buckets) {
+    if (periodMillis <= 0 || buckets <= 0) {
+      throw ExceptionUtils.get(String
+        .format("Period and buckets must be greater than 0, period: %d, buckets: %d", periodMillis,
+          buckets));
+    }
+
+    this.periodMillis = periodMillis;
+    // 取不超过配置值且能整除窗口的桶个数，使 桶个数 * 桶宽度 恰好等于窗口；窗口小于桶个数时每毫秒一个桶
+    int count = (int) Math.min(buckets, periodMillis);
+    while (periodMillis % count != 0) {
+      count--;
+    }
+    this.buckets = count;
+    this.bucketMillis = periodMillis / count;
+    this.states = new AtomicLongArray(this.buckets);
+  }
+
+  /**
+   * 尝试访问
+   *
+   * @param limit 窗口内最多的访问次数
+   * @return boolean
+   */
+  public boolean tryAcquire(int limit) {
+    return tryAcquire(limit, System.currentTimeMillis());
+  }
+
+  public boolean tryAcquire(int limit, long nowMillis) {
+    return acquire(limit, nowMillis) >= 0;
+  }
+
+  /**
+   * 尝试访问并返回窗口内的剩余次数
+   *
+   * @param limit 窗口内最多的访问次数
+   * @param nowMillis 当前时间(毫秒)
+   * @return 放行时返回本次之后的剩余次数，拒绝时返回 -1
+   */
+  public long acquire(int limit, long nowMillis) {
+    long bucketId = nowMillis / bucketMillis;
+    int index = (int) (bucketId % buckets);
+    if (!increment(index, bucketId, 1)) {
+      return -1L;
+    }
+
+    long total = sum(bucketId);
+    if (total > limit) {
+      // 撤销本次计数；桶已被新的时间段复用时无需撤销
+      increment(index, bucketId, -1);
+      return -1L;
+    }
+
+    return limit - total;
+  }
+
+  /**
+   * 撤销 {@link #acquire(int, long)} 在同一时间的一次计数，用于多维度限流中其他维度拒绝时回滚
+   *
+   * @param nowMillis 计数时使用的时间(毫秒)
+   */
+  public void release(long nowMillis) {
+    long bucketId = nowMillis / bucketMillis;
+    // 桶已被新的时间段复用时计数已随之过期，无需撤销
+    increment((int) (bucketId % buckets), bucketId, -1);
+  }
+
+  /**
+   * 窗口内最早的计数移出窗口还需的毫秒数，窗口内没有计数时返回0
+   *
+   * @param nowMillis 当前时间(毫秒)
+   * @return long
+   */
+  public long millisUntilRelease(long nowMillis) {
+    long bucketId = nowMillis / bucketMillis;
+    int id = (int) bucketId;
+    int oldestAge = -1;
+    for (int i = 0; i < buckets; i++) {
+      long state = states.get(i);
+      int age = id - (int) (state >>> 32);
+      if (age >= 0 && age < buckets && (state & COUNT_MASK) > 0 && age > oldestAge) {
+        oldestAge = age;
+      }
+    }
+
+    if (oldestAge < 0) {
+      return 0L;
+    }
+
+    return (bucketId + buckets - oldestAge) * bucketMillis - nowMillis;
+  }
+
+  /**
+   * 窗口内的访问次数
+   *
+   * @return long
+   */
+  public long count() {
+    return sum(System.currentTimeMillis() / bucketMillis);
+  }
+
+  public long getPeriodMillis() {
+    return periodMillis;
+  }
+
+  private boolean increment(int index, long bucketId, int delta) {
+    int id = (int) bucketId;
+    for (; ; ) {
+      long state = states.get(index);
+      int stateId = (int) (state >>> 32);
+      long count;
+      int lead = stateId - id;
+      if (state != 0L && lead == 0) {
+        count = (state & COUNT_MASK) + delta;
+      } else if (state == 0L || lead < 0 || lead >= MAX_LEAD) {
+        // 桶已过期，由本次访问重置
+        if (delta < 0) {
+          return false;
+        }
+        count = delta;
+      } else {
+        // 时钟回退或线程停顿后落到已被复用的桶
+        return false;
+      }
+
+      if (count < 0 || count > Integer.MAX_VALUE) {
+        return false;
+      }
+
+      if (states.compareAndSet(index, state, ((long) id << 32) | count)) {
+        return true;
+      }
+    }
+  }
+
+  private long sum(long bucketId) {
+    int id = (int) bucketId;
+    long total = 0L;
+    for (int i = 0; i < buckets; i++) {
+      long state = states.get(i);
+      int age = id - (int) (state >>> 32);
+      if (age >= 0 && age < buckets) {
+        total += state & COUNT_MASK;
+      }
+    }
+
+    return total;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.metrics;
+
+/**
+ * 限流指标
+ * <p>默认使用 {@link #NOOP}，存在 MeterRegistry 时注入 Micrometer 实现</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public interface LimitMetrics {
+
+  String TYPE_LOCAL = "local";
+  String TYPE_REDIS = "redis";
+
+  LimitMetrics NOOP = new LimitMetrics() {
+
+    @Override
+    public void recordQueued(String type, long nanos) {
+    }
+
+    @Override
+    public void recordRejected(String type, String reason) {
+    }
+
+    @Override
+    public void recordFallback(String type) {
+    }
+  };
+
+  /**
+   * 记录并发限流的排队耗时
+   *
+   * @param type 限流类型(local/redis)
+   * @param nanos 排队耗时(纳秒)
+   */
+  void recordQueued(String type, long nanos);
+
+  /**
+   * 记录一次拒绝
+   *
+   * @param type 限流类型(local/redis)
+   * @param reason 拒绝原因
+   */
+  void recordRejected(String type, String reason);
+
+  /**
+   * 记录一次降级为本地限流
+   *
+   * @param type 限流类型(local/redis)
+   */
+  void recordFallback(String type);
+}
@@ -0,0 +1,73 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流指标（Micrometer）
+ * <ul>
+ * <li>dsf.limit.concurrency.queued: 并发限流的排队耗时，标签 type，带百分位直方图</li>
+ * <li>dsf.limit.rejected: 拒绝次数，标签 type、reason</li>
+ * <li>dsf.limit.fallback: 熔断后降级为本地限流的次数，标签 type</li>
+ * </ul>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class MicrometerLimitMetrics implements LimitMetrics {
+
+  private static final String PREFIX = "dsf.limit.";
+  private static final String TAG_TYPE = "type";
+  private static final String TAG_REASON = "reason";
+
+  private final MeterRegistry meterRegistry;
+  // 缓存已注册的指标，避免每次调用都到 MeterRegistry 中查找
+  private final Map<String, Timer> queuedTimerMap = new ConcurrentHashMap<String, Timer>();
+  private final Map<String, Counter> rejectedCounterMap = new ConcurrentHashMap<String, Counter>();
+  private final Map<String, Counter> fallbackCounterMap = new ConcurrentHashMap<String, Counter>();
+
+  public MicrometerLimitMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void recordQueued(String type, long nanos) {
+    queuedTimerMap.computeIfAbsent(type,
+      key -> Timer.builder(PREFIX + "concurrency.queued").tag(TAG_TYPE, type)
+        .publishPercentileHistogram()
+        .register(meterRegistry))
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void recordRejected(String type, String reason) {
+    rejectedCounterMap.computeIfAbsent(type + ":" + reason,
+      key -> Counter.builder(PREFIX + "rejected").tags(TAG_TYPE, type, TAG_REASON, reason)
+        .register(meterRegistry))
+      .increment();
+  }
+
+  @Override
+  public void recordFallback(String type) {
+    fallbackCounterMap.computeIfAbsent(type,
+      key -> Counter.builder(PREFIX + "fallback").tag(TAG_TYPE, type).register(meterRegistry))
+      .increment();
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.redis.breaker;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.KeyUtil;
+import net.dragonshard.dsf.limit.aop.LimitExecutor;
+import net.dragonshard.dsf.limit.configuration.property.BreakerProperties;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
+import net.dragonshard.dsf.limit.local.impl.SlidingWindowLocalLimitExecutorImpl;
+import net.dragonshard.dsf.limit.metrics.LimitMetrics;
+import net.dragonshard.dsf.limit.redis.handler.RedisHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * Redis限流熔断器
+ * <p>连续 failureThreshold 次异常或慢调用后熔断，熔断期间不访问Redis，直接使用本地限流，
+ * limitCount 按集群节点数均分；openMillis 之后放行一个探测请求(半开)，成功则恢复，失败则继续熔断</p>
+ * <p>未配置节点数时，各实例定期向Redis写入心跳，以最近 3 个心跳间隔内存活的实例数作为节点数</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class RedisLimitBreaker {
+
+  private static final int CLOSED = 0;
+  private static final int OPEN = 1;
+  private static final int HALF_OPEN = 2;
+
+  @Autowired
+  private RedisHandler redisHandler;
+  private final LimitProperties limitProperties;
+  private final BreakerProperties breakerProperties;
+  private final LimitExecutor fallbackExecutor;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  // 半开状态下只放行一个探测请求
+  private final AtomicBoolean probing = new AtomicBoolean();
+  private final String nodeId = UUID.randomUUID().toString();
+  private volatile int state = CLOSED;
+  private volatile long openedAt;
+  private volatile int nodeCount = 1;
+  private RedisScript<Number> heartbeatScript;
+  private ScheduledExecutorService heartbeatExecutor;
+  private LimitMetrics limitMetrics = LimitMetrics.NOOP;
+
+  public RedisLimitBreaker(LimitProperties limitProperties) {
+    this.limitProperties = limitProperties;
+    this.breakerProperties = limitProperties.getBreaker();
+    this.fallbackExecutor = new SlidingWindowLocalLimitExecutorImpl(limitProperties);
+  }
+
+  @Autowired(required = false)
+  public void setLimitMetrics(LimitMetrics limitMetrics) {
+    this.limitMetrics = limitMetrics;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (breakerProperties.getNodeCount() > 0) {
+      nodeCount = breakerProperties.getNodeCount();
+      return;
+    }
+
+    heartbeatScript = new DefaultRedisScript<Number>(buildHeartbeatLuaScript(), Number.class);
+    long interval = breakerProperties.getHeartbeatIntervalMillis();
+    heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("dsf-limit-heartbeat-%d").setDaemon(true).build());
+    heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (heartbeatExecutor != null) {
+      heartbeatExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * 心跳: 写入本实例的时间，删除过期的实例后返回存活实例数
+   * <p>ARGV: 实例标识, 过期时间(毫秒)</p>
+   */
+  private String buildHeartbeatLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("redis.replicate_commands();");
+    lua.append("\nlocal t = redis.call('time');");
+    lua.append("\nlocal now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000);");
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal ttl = tonumber(ARGV[2]);");
+    lua.append("\nredis.call('zremrangebyscore', key, '-inf', now - ttl);");
+    lua.append("\nredis.call('zadd', key, now, ARGV[1]);");
+    lua.append("\nredis.call('pexpire', key, ttl);");
+    lua.append("\nreturn redis.call('zcard', key);");
+
+    return lua.toString();
+  }
+
+  private void heartbeat() {
+    if (state != CLOSED) {
+      return;
+    }
+
+    try {
+      String key = KeyUtil.getCompositeKey(limitProperties.getPrefix(), "DsfLimitNode", "heartbeat",
+        limitProperties.getHashTag());
+      long ttl = breakerProperties.getHeartbeatIntervalMillis() * 3;
+      Number count = redisHandler.getRedisTemplate()
+        .execute(heartbeatScript, Collections.singletonList(key), nodeId, String.valueOf(ttl));
+      if (count != null && count.intValue() > 0) {
+        nodeCount = count.intValue();
+      }
+    } catch (Exception e) {
+      log.warn("Limit heartbeat failed, node count stays {}", nodeCount, e);
+    }
+  }
+
+  /**
+   * 熔断保护下访问Redis，熔断、异常或探测未获准时使用本地限流
+   *
+   * @param compositeKey 资源复合Key
+   * @param limitPeriod 给定的时间段(单位秒)
+   * @param limitCount 最多的访问限制次数
+   * @param algorithm 限流算法
+   * @param redisAccess 访问Redis
+   * @return LimitResult
+   */
+  public LimitResult tryAcquire(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm, Callable<LimitResult> redisAccess) throws Exception {
+    if (allowRequest()) {
+      LimitResult result = call(redisAccess);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    limitMetrics.recordFallback(LimitMetrics.TYPE_REDIS);
+    return fallbackExecutor
+      .tryAcquire(compositeKey, limitPeriod, getLocalLimitCount(limitCount), algorithm);
+  }
+
+  /**
+   * 多维度的熔断保护，降级时各维度的 limitCount 均按节点数均分
+   *
+   * @param dimensions 限流维度
+   * @param redisAccess 访问Redis
+   * @return LimitResult
+   */
+  public LimitResult tryAcquire(List<LimitDimension> dimensions,
+    Callable<LimitResult> redisAccess) throws Exception {
+    if (allowRequest()) {
+      LimitResult result = call(redisAccess);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    limitMetrics.recordFallback(LimitMetrics.TYPE_REDIS);
+    List<LimitDimension> localDimensions = new ArrayList<LimitDimension>(dimensions.size());
+    for (LimitDimension dimension : dimensions) {
+      localDimensions.add(new LimitDimension(dimension.getCompositeKey(),
+        dimension.getLimitPeriod(), getLocalLimitCount(dimension.getLimitCount()),
+        dimension.getAlgorithm()));
+    }
+
+    return fallbackExecutor.tryAcquire(localDimensions);
+  }
+
+  /**
+   * 调用Redis并记录结果，失败时返回null
+   */
+  private LimitResult call(Callable<LimitResult> redisAccess) {
+    long start = System.nanoTime();
+    LimitResult result;
+    try {
+      result = redisAccess.call();
+    } catch (Exception e) {
+      log.warn("Redis exception occurs while Limit, fallback to local limit", e);
+      onFailure();
+      return null;
+    }
+
+    long slowCallMillis = breakerProperties.getSlowCallMillis();
+    if (slowCallMillis > 0
+      && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(slowCallMillis)) {
+      onFailure();
+    } else {
+      onSuccess();
+    }
+
+    return result;
+  }
+
+  private boolean allowRequest() {
+    if (state == CLOSED) {
+      return true;
+    }
+
+    if (state == OPEN && System.currentTimeMillis() - openedAt >= breakerProperties
+      .getOpenMillis()) {
+      state = HALF_OPEN;
+    }
+
+    return state == HALF_OPEN && probing.compareAndSet(false, true);
+  }
+
+  private void onSuccess() {
+    consecutiveFailures.set(0);
+    if (state == HALF_OPEN) {
+      state = CLOSED;
+      probing.set(false);
+      log.info("Redis limit breaker closed");
+    }
+  }
+
+  private void onFailure() {
+    if (state == HALF_OPEN) {
+      open();
+      return;
+    }
+
+    if (consecutiveFailures.incrementAndGet() >= breakerProperties.getFailureThreshold()
+      && state == CLOSED) {
+      open();
+    }
+  }
+
+  private void open() {
+    openedAt = System.currentTimeMillis();
+    state = OPEN;
+    consecutiveFailures.set(0);
+    probing.set(false);
+    log.warn("Redis limit breaker opened for {} ms, using local limit with node count {}",
+      breakerProperties.getOpenMillis(), nodeCount);
+  }
+
+  private int getLocalLimitCount(int limitCount) {
+    return Math.max(1, (limitCount + nodeCount - 1) / nodeCount);
+  }
+
+  public boolean isOpen() {
+    return state != CLOSED;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.redis.impl;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.limit.aop.ConcurrencyLimiter;
+import net.dragonshard.dsf.limit.metrics.LimitMetrics;
+import net.dragonshard.dsf.limit.redis.handler.RedisHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+/**
+ * 并发限流实现类（redis）
+ * <p>每个Key一个 ZSET，成员为持有者标识，分值为租约到期时间(Redis时间，毫秒)；获取时先清理已到期的租约，
+ * 持有者异常退出时许可在租约到期后自动回收。Redis 不支持阻塞等待，排队时按退避间隔轮询</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class RedisConcurrencyLimiterImpl implements ConcurrencyLimiter {
+
+  private static final long MIN_POLL_INTERVAL_MS = 5L;
+  private static final long MAX_POLL_INTERVAL_MS = 100L;
+
+  @Autowired
+  private RedisHandler redisHandler;
+  private RedisScript<Number> acquireScript;
+  private LimitMetrics limitMetrics = LimitMetrics.NOOP;
+
+  @Autowired(required = false)
+  public void setLimitMetrics(LimitMetrics limitMetrics) {
+    this.limitMetrics = limitMetrics;
+  }
+
+  @PostConstruct
+  public void init() {
+    acquireScript = new DefaultRedisScript<Number>(buildAcquireLuaScript(), Number.class);
+  }
+
+  /**
+   * ARGV: 最大并发数, 租约时长(毫秒), 持有者标识；返回1成功、0已满
+   */
+  private String buildAcquireLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("redis.replicate_commands();");
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal t = redis.call('time');");
+    lua.append("\nlocal now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000);");
+    lua.append("\nredis.call('zremrangebyscore', key, '-inf', now);");
+    lua.append("\nif redis.call('zcard', key) >= tonumber(ARGV[1]) then");
+    lua.append("\n  return 0;");
+    lua.append("\nend");
+    lua.append("\nredis.call('zadd', key, now + tonumber(ARGV[2]), ARGV[3]);");
+    // 最后加入的租约到期最晚，Key 随之过期
+    lua.append("\nredis.call('pexpire', key, ARGV[2]);");
+    lua.append("\nreturn 1;");
+
+    return lua.toString();
+  }
+
+  @Override
+  public Permit tryAcquire(String compositeKey, int maxConcurrent, long leaseMillis,
+    long maxWaitMillis) throws InterruptedException {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(maxConcurrent > 0 && leaseMillis > 0,
+      "@Limit parameter [ limitCount ] and [ limitPeriod ] must be greater than 0");
+    String member = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    long pollInterval = MIN_POLL_INTERVAL_MS;
+    for (; ; ) {
+      if (acquire(compositeKey, maxConcurrent, leaseMillis, member)) {
+        if (maxWaitMillis > 0) {
+          limitMetrics.recordQueued(LimitMetrics.TYPE_REDIS, System.nanoTime() - start);
+        }
+        return () -> release(compositeKey, member);
+      }
+
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        if (maxWaitMillis > 0) {
+          limitMetrics.recordQueued(LimitMetrics.TYPE_REDIS, System.nanoTime() - start);
+        }
+        limitMetrics.recordRejected(LimitMetrics.TYPE_REDIS, "concurrency");
+        return null;
+      }
+
+      Thread.sleep(Math.min(pollInterval, remaining));
+      pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL_MS);
+    }
+  }
+
+  private boolean acquire(String compositeKey, int maxConcurrent, long leaseMillis,
+    String member) {
+    Number acquired = getRedisTemplate().execute(acquireScript,
+      Collections.singletonList(compositeKey), maxConcurrent + "", leaseMillis + "", member);
+    return acquired != null && acquired.intValue() == 1;
+  }
+
+  private void release(String compositeKey, String member) {
+    try {
+      getRedisTemplate().opsForZSet().remove(compositeKey, member);
+    } catch (Exception e) {
+      // 租约到期后自动回收
+      log.warn("Release concurrency permit of {} failed", compositeKey, e);
+    }
+  }
+
+  private StringRedisTemplate getRedisTemplate() {
+    return redisHandler.getRedisTemplate();
+  }
+}
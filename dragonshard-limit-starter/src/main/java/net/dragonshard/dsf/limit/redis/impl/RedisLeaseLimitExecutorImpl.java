@@ -0,0 +1,271 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.limit.redis.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dragonshard.dsf.core.toolkit.ExceptionUtils;
+import net.dragonshard.dsf.limit.configuration.property.LeaseProperties;
+import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.configuration.property.LocalProperties;
+import net.dragonshard.dsf.limit.entity.LimitResult;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+/**
+ * Redis限流实现类（许可租用）
+ * <p>固定窗口限流时，每个实例一次从Redis的窗口计数中租用一批许可(INCRBY k，不超过 limitCount)，
+ * 之后在本地通过原子计数发放，Redis访问次数约降低为原来的 1/k</p>
+ * <p>租到的许可不会超过全局配额，所以不会多放行；代价是其他实例持有未用完的许可时，
+ * 本实例可能提前拒绝，最多少放行 (实例数 - 1) * k 次。未用完的许可随Redis窗口一起过期，
+ * 关闭或租约被淘汰时归还仍在当前窗口内的许可</p>
+ * <p>租约按 dragonshard.limit.local 的缓存配置淘汰，避免按用户、IP等维度的Key无限增长；
+ * 淘汰时在后台线程归还许可，不在请求线程上访问Redis，队列已满时放弃归还，许可随窗口过期</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@Slf4j
+public class RedisLeaseLimitExecutorImpl extends RedisLimitExecutorImpl {
+
+  private RedisScript<List<Object>> leaseScript;
+  private RedisScript<Number> releaseScript;
+  // 归还队列的容量
+  private static final int RELEASE_QUEUE_CAPACITY = 1024;
+
+  private final Cache<String, PermitLease> leaseCache;
+  private final ExecutorService releaseExecutor;
+
+  public RedisLeaseLimitExecutorImpl(LimitProperties limitProperties) {
+    super(limitProperties);
+    LocalProperties localProperties = limitProperties.getLocal();
+    this.releaseExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<Runnable>(RELEASE_QUEUE_CAPACITY),
+      new ThreadFactoryBuilder().setNameFormat("dsf-limit-lease-release-%d").setDaemon(true)
+        .build(), new ThreadPoolExecutor.DiscardPolicy());
+    this.leaseCache = CacheBuilder.newBuilder()
+      .maximumSize(localProperties.getMaximumSize())
+      .expireAfterAccess(localProperties.getExpireAfterAccessSeconds(), TimeUnit.SECONDS)
+      .removalListener(this::onRemoval)
+      .build();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public void init() {
+    super.init();
+    leaseScript = new DefaultRedisScript(buildLeaseLuaScript(), List.class);
+    releaseScript = new DefaultRedisScript<Number>(buildReleaseLuaScript(), Number.class);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    releaseExecutor.shutdown();
+    for (Map.Entry<String, PermitLease> entry : leaseCache.asMap().entrySet()) {
+      releaseQuietly(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * 租约被淘汰时在后台线程归还未用完的许可；Guava 在调用缓存的线程上执行该回调，这里只做判断与提交
+   */
+  private void onRemoval(RemovalNotification<String, PermitLease> notification) {
+    String compositeKey = notification.getKey();
+    PermitLease lease = notification.getValue();
+    if (notification.wasEvicted() && compositeKey != null && lease != null
+      && lease.isReleasable()) {
+      releaseExecutor.execute(() -> releaseQuietly(compositeKey, lease));
+    }
+  }
+
+  private void releaseQuietly(String compositeKey, PermitLease lease) {
+    try {
+      lease.release(compositeKey);
+    } catch (Exception e) {
+      log.warn("Release permits of {} failed", compositeKey, e);
+    }
+  }
+
+  /**
+   * 租用: 在窗口计数上增加 min(k, 剩余配额)，窗口的首次访问设置过期
+   * <p>ARGV: k, limitCount, limitPeriod(秒)；返回 {租到的许可数, 窗口剩余毫秒, Redis当前毫秒}</p>
+   */
+  private String buildLeaseLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("local key = KEYS[1];");
+    lua.append("\nlocal batch = tonumber(ARGV[1]);");
+    lua.append("\nlocal limit = tonumber(ARGV[2]);");
+    lua.append("\nlocal c = tonumber(redis.call('get', key) or '0');");
+    lua.append("\nlocal granted = math.min(batch, limit - c);");
+    lua.append("\nif granted > 0 then");
+    lua.append("\n  redis.call('incrby', key, granted);");
+    lua.append("\nelse");
+    lua.append("\n  granted = 0;");
+    lua.append("\nend");
+    lua.append("\nif redis.call('pttl', key) < 0 then");
+    lua.append("\n  redis.call('expire', key, ARGV[3]);");
+    lua.append("\nend");
+    lua.append("\nlocal t = redis.call('time');");
+    lua.append("\nlocal now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000);");
+    lua.append("\nreturn {granted, redis.call('pttl', key), now};");
+
+    return lua.toString();
+  }
+
+  /**
+   * 归还: 仅当Key仍是租用时的窗口(过期时间未被新窗口刷新)时扣减计数
+   * <p>ARGV: 归还的许可数, 窗口结束时间(Redis毫秒), limitPeriod(毫秒)</p>
+   */
+  private String buildReleaseLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    lua.append("redis.replicate_commands();");
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal ttl = redis.call('pttl', key);");
+    lua.append("\nif ttl <= 0 then");
+    lua.append("\n  return 0;");
+    lua.append("\nend");
+    lua.append("\nlocal t = redis.call('time');");
+    lua.append("\nlocal now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000);");
+    lua.append("\nif now + ttl > tonumber(ARGV[2]) + tonumber(ARGV[3]) / 2 then");
+    lua.append("\n  return 0;");
+    lua.append("\nend");
+    lua.append("\nlocal permits = math.min(tonumber(ARGV[1]), tonumber(redis.call('get', key) or '0'));");
+    lua.append("\nif permits > 0 then");
+    lua.append("\n  redis.call('decrby', key, permits);");
+    lua.append("\nend");
+    lua.append("\nreturn permits;");
+
+    return lua.toString();
+  }
+
+  /**
+   * 本地许可不统计剩余次数；拒绝时以本地租约的剩余时间作为重试等待时间
+   */
+  @Override
+  protected LimitResult tryAcquireFixedWindow(String compositeKey, int limitPeriod,
+    int limitCount) {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    PermitLease lease;
+    try {
+      lease = leaseCache.get(compositeKey, PermitLease::new);
+    } catch (ExecutionException e) {
+      throw ExceptionUtils
+        .get(String.format("Create permit lease failed, key: %s", compositeKey), e.getCause());
+    }
+
+    if (lease.tryAcquire(compositeKey, limitPeriod, limitCount)) {
+      return LimitResult.of(true);
+    }
+
+    long retryAfterMillis = lease.deadline - System.currentTimeMillis();
+    return new LimitResult(false, 0L,
+      retryAfterMillis > 0 ? retryAfterMillis : LimitResult.UNKNOWN);
+  }
+
+  private int getBatchSize(int limitCount) {
+    LeaseProperties leaseProperties = limitProperties.getLease();
+    int batchSize = Math.min(leaseProperties.getBatchSize(),
+      (int) ((long) limitCount * leaseProperties.getMaxBatchPercent() / 100));
+    return Math.max(1, batchSize);
+  }
+
+  /**
+   * 单个Key在当前窗口内租到的许可
+   */
+  private class PermitLease {
+
+    private final AtomicInteger permits = new AtomicInteger();
+    // 本地时间(毫秒)，之后本地许可作废
+    private volatile long deadline;
+    // 窗口结束时间(Redis时间，毫秒)，用于归还时判断是否仍是同一个窗口
+    private volatile long windowEnd;
+    // 当前窗口的全局配额已耗尽，窗口结束前直接拒绝
+    private volatile boolean exhausted;
+    private volatile int limitPeriod;
+
+    boolean tryAcquire(String compositeKey, int limitPeriod, int limitCount) {
+      for (; ; ) {
+        if (System.currentTimeMillis() < deadline) {
+          int current = permits.get();
+          if (current > 0) {
+            if (permits.compareAndSet(current, current - 1)) {
+              return true;
+            }
+            continue;
+          }
+
+          if (exhausted) {
+            return false;
+          }
+        }
+
+        lease(compositeKey, limitPeriod, limitCount);
+      }
+    }
+
+    private synchronized void lease(String compositeKey, int limitPeriod, int limitCount) {
+      long now = System.currentTimeMillis();
+      if (now < deadline && (permits.get() > 0 || exhausted)) {
+        // 其他线程已租用
+        return;
+      }
+
+      List<Object> result = getRedisTemplate().execute(leaseScript,
+        Collections.singletonList(compositeKey), getBatchSize(limitCount) + "", limitCount + "",
+        limitPeriod + "");
+      int granted = ((Number) result.get(0)).intValue();
+      long ttl = ((Number) result.get(1)).longValue();
+      if (ttl <= 0) {
+        ttl = limitPeriod * 1000L;
+      }
+
+      this.limitPeriod = limitPeriod;
+      windowEnd = ((Number) result.get(2)).longValue() + ttl;
+      exhausted = granted == 0;
+      permits.set(granted);
+      deadline = now + ttl;
+    }
+
+    /**
+     * 是否有仍在当前窗口内的许可需要归还
+     */
+    boolean isReleasable() {
+      return permits.get() > 0 && System.currentTimeMillis() < deadline;
+    }
+
+    synchronized void release(String compositeKey) {
+      int remaining = permits.getAndSet(0);
+      if (remaining <= 0 || System.currentTimeMillis() >= deadline) {
+        return;
+      }
+
+      getRedisTemplate().execute(releaseScript, Collections.singletonList(compositeKey),
+        remaining + "", windowEnd + "", limitPeriod * 1000L + "");
+    }
+  }
+}
@@ -13,11 +13,16 @@
 
 package net.dragonshard.dsf.limit.redis.impl;
 
-import lombok.extern.slf4j.Slf4j;
-import net.dragonshard.dsf.limit.aop.LimitDelegate;
+import java.util.List;
+import net.dragonshard.dsf.limit.aop.AbstractLimitDelegate;
 import net.dragonshard.dsf.limit.aop.LimitExecutor;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
 import net.dragonshard.dsf.limit.exception.RequestReachMaxLimitException;
+import net.dragonshard.dsf.limit.redis.breaker.RedisLimitBreaker;
+import net.dragonshard.dsf.web.core.framework.util.RateLimitUtils;
 import org.aopalliance.intercept.MethodInvocation;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -28,36 +33,69 @@ import org.springframework.beans.factory.annotation.Autowired;
  * @version v1.0
  * @date 2019-07-17
  **/
-@Slf4j
-public class RedisLimitDelegateImpl implements LimitDelegate {
+public class RedisLimitDelegateImpl extends AbstractLimitDelegate {
 
   @Autowired
   private LimitExecutor limitExecutor;
-  private LimitProperties limitProperties;
+  @Autowired(required = false)
+  private RedisLimitBreaker redisLimitBreaker;
 
   public RedisLimitDelegateImpl(LimitProperties limitProperties) {
-    this.limitProperties = limitProperties;
+    super(limitProperties);
   }
 
   @Override
-  public Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount)
-    throws Throwable {
-    boolean status = true;
+  public Object invoke(MethodInvocation invocation, String key, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) throws Throwable {
+    LimitResult result;
     try {
-      status = limitExecutor.tryAccess(key, limitPeriod, limitCount);
+      if (redisLimitBreaker != null) {
+        result = redisLimitBreaker.tryAcquire(key, limitPeriod, limitCount, algorithm,
+          () -> limitExecutor.tryAcquire(key, limitPeriod, limitCount, algorithm));
+      } else {
+        result = limitExecutor.tryAcquire(key, limitPeriod, limitCount, algorithm);
+      }
     } catch (Exception e) {
-      if (limitProperties.getAop().getExceptionIgnore()) {
-        log.error("Redis exception occurs while Limit", e);
-        return invocation.proceed();
+      return proceedOnException(invocation, e, getExceptionMessage());
+    }
+
+    if (result.isAllowed()) {
+      // 放行时同样输出剩余次数
+      RateLimitUtils.setHeaders(result.getRemaining(), result.getRetryAfterMillis());
+      return invocation.proceed();
+    } else {
+      throw new RequestReachMaxLimitException(result.getRemaining(),
+        result.getRetryAfterMillis());
+    }
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation, List<LimitDimension> dimensions)
+    throws Throwable {
+    LimitResult result;
+    try {
+      if (redisLimitBreaker != null) {
+        result = redisLimitBreaker
+          .tryAcquire(dimensions, () -> limitExecutor.tryAcquire(dimensions));
       } else {
-        throw e;
+        result = limitExecutor.tryAcquire(dimensions);
       }
+    } catch (Exception e) {
+      return proceedOnException(invocation, e, getExceptionMessage());
     }
 
-    if (status) {
+    if (result.isAllowed()) {
+      // 放行时同样输出剩余次数
+      RateLimitUtils.setHeaders(result.getRemaining(), result.getRetryAfterMillis());
       return invocation.proceed();
     } else {
-      throw new RequestReachMaxLimitException();
+      throw new RequestReachMaxLimitException(result.getRemaining(),
+        result.getRetryAfterMillis());
     }
   }
+
+  @Override
+  protected String getExceptionMessage() {
+    return "Redis exception occurs while Limit";
+  }
 }
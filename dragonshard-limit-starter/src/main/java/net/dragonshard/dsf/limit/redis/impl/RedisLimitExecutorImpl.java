@@ -14,12 +14,18 @@
 package net.dragonshard.dsf.limit.redis.impl;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import net.dragonshard.dsf.core.toolkit.KeyUtil;
 import net.dragonshard.dsf.limit.aop.LimitExecutor;
 import net.dragonshard.dsf.limit.configuration.property.LimitProperties;
+import net.dragonshard.dsf.limit.entity.LimitAlgorithmEnum;
+import net.dragonshard.dsf.limit.entity.LimitDimension;
+import net.dragonshard.dsf.limit.entity.LimitResult;
 import net.dragonshard.dsf.limit.redis.handler.RedisHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -32,26 +38,41 @@ public class RedisLimitExecutorImpl implements LimitExecutor {
 
   @Autowired
   private RedisHandler redisHandler;
-  private LimitProperties limitProperties;
-  private RedisScript<Number> redisScript;
+  protected LimitProperties limitProperties;
+  private RedisScript<List<Object>> redisScript;
+  // 滑动窗口与令牌桶脚本，返回 {1放行/0拒绝, 剩余次数, 重试等待毫秒}
+  private final Map<LimitAlgorithmEnum, RedisScript<List<Object>>> algorithmScriptMap = new EnumMap<LimitAlgorithmEnum, RedisScript<List<Object>>>(
+    LimitAlgorithmEnum.class);
+  private RedisScript<List<Object>> multiScript;
 
   public RedisLimitExecutorImpl(LimitProperties limitProperties) {
     this.limitProperties = limitProperties;
   }
 
+  @SuppressWarnings({"unchecked", "rawtypes"})
   @PostConstruct
   public void init() {
     String luaScript = buildLuaScript();
-    redisScript = new DefaultRedisScript<Number>(luaScript, Number.class);
+    redisScript = new DefaultRedisScript(luaScript, List.class);
+    algorithmScriptMap.put(LimitAlgorithmEnum.SLIDING_LOG,
+      new DefaultRedisScript(buildSlidingLogLuaScript(), List.class));
+    algorithmScriptMap.put(LimitAlgorithmEnum.SLIDING_WINDOW,
+      new DefaultRedisScript(buildSlidingWindowLuaScript(), List.class));
+    algorithmScriptMap.put(LimitAlgorithmEnum.TOKEN_BUCKET,
+      new DefaultRedisScript(buildTokenBucketLuaScript(), List.class));
+    multiScript = new DefaultRedisScript(buildMultiLuaScript(), List.class);
   }
 
+  /**
+   * 固定窗口: 返回 {计数, 窗口剩余毫秒}
+   */
   private String buildLuaScript() {
     StringBuilder lua = new StringBuilder();
     lua.append("local c");
     lua.append("\nc = redis.call('get',KEYS[1])");
     // 调用不超过最大值，则直接返回
     lua.append("\nif c and tonumber(c) > tonumber(ARGV[1]) then");
-    lua.append("\nreturn c;");
+    lua.append("\nreturn {tonumber(c), redis.call('pttl',KEYS[1])};");
     lua.append("\nend");
     // 执行计算器自加
     lua.append("\nc = redis.call('incr',KEYS[1])");
@@ -59,26 +80,314 @@ public class RedisLimitExecutorImpl implements LimitExecutor {
     // 从第一次调用开始限流，设置对应键值的过期
     lua.append("\nredis.call('expire',KEYS[1],ARGV[2])");
     lua.append("\nend");
-    lua.append("\nreturn c;");
+    lua.append("\nreturn {c, redis.call('pttl',KEYS[1])};");
 
     return lua.toString();
   }
 
+  /**
+   * 以 Redis 服务端时间(毫秒)为准，避免各实例时钟偏差；TIME 之后还要写入，需要开启按命令复制
+   */
+  private void appendNow(StringBuilder lua) {
+    lua.append("redis.replicate_commands();");
+    lua.append("\nlocal t = redis.call('time');");
+    lua.append("\nlocal now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000);");
+  }
+
+  /**
+   * 滑动窗口日志: 删除窗口之外的记录后计数，未超出则记录本次访问；拒绝时等到最早的记录移出窗口
+   * <p>ARGV: limitCount, 窗口(毫秒), 本次访问的唯一标识</p>
+   */
+  private String buildSlidingLogLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    appendNow(lua);
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal limit = tonumber(ARGV[1]);");
+    lua.append("\nlocal period = tonumber(ARGV[2]);");
+    lua.append("\nredis.call('zremrangebyscore', key, '-inf', now - period);");
+    lua.append("\nlocal count = redis.call('zcard', key);");
+    lua.append("\nif count >= limit then");
+    lua.append("\n  local oldest = redis.call('zrange', key, 0, 0, 'withscores');");
+    lua.append("\n  return {0, 0, tonumber(oldest[2]) + period - now};");
+    lua.append("\nend");
+    lua.append("\nredis.call('zadd', key, now, ARGV[3]);");
+    lua.append("\nredis.call('pexpire', key, period);");
+    lua.append("\nreturn {1, limit - count - 1, 0};");
+
+    return lua.toString();
+  }
+
+  /**
+   * 滑动窗口计数: 一个Hash保存各窗口的计数，估算值 = 上一窗口计数 * 其在滑动窗口内的占比 + 当前窗口计数
+   * <p>拒绝时等到上一窗口的占比衰减到估算值低于 limitCount，当前窗口已满时等到当前窗口结束</p>
+   * <p>ARGV: limitCount, 窗口(毫秒)</p>
+   */
+  private String buildSlidingWindowLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    appendNow(lua);
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal limit = tonumber(ARGV[1]);");
+    lua.append("\nlocal period = tonumber(ARGV[2]);");
+    lua.append("\nlocal window = math.floor(now / period);");
+    lua.append("\nlocal elapsed = now - window * period;");
+    lua.append("\nlocal current = tonumber(redis.call('hget', key, window) or '0');");
+    lua.append("\nlocal previous = tonumber(redis.call('hget', key, window - 1) or '0');");
+    lua.append("\nlocal estimate = previous * (period - elapsed) / period + current;");
+    lua.append("\nif estimate >= limit then");
+    lua.append("\n  local retry = period - elapsed;");
+    lua.append("\n  if current < limit then");
+    lua.append("\n    retry = period * (1 - (limit - current) / previous) - elapsed;");
+    lua.append("\n  end");
+    lua.append("\n  return {0, 0, math.max(1, math.ceil(retry))};");
+    lua.append("\nend");
+    // 进入新窗口时清理更早的窗口
+    lua.append("\nif current == 0 then");
+    lua.append("\n  for _, field in ipairs(redis.call('hkeys', key)) do");
+    lua.append("\n    if tonumber(field) < window - 1 then");
+    lua.append("\n      redis.call('hdel', key, field);");
+    lua.append("\n    end");
+    lua.append("\n  end");
+    lua.append("\nend");
+    lua.append("\nredis.call('hincrby', key, window, 1);");
+    lua.append("\nredis.call('pexpire', key, period * 2);");
+    lua.append("\nreturn {1, math.max(0, math.floor(limit - estimate - 1)), 0};");
+
+    return lua.toString();
+  }
+
+  /**
+   * 令牌桶(GCRA): 只保存理论到达时间 tat，每次放行 tat 增加一个间隔 period / limitCount；
+   * tat 超前当前时间不超过 period 时放行，即最多允许 limitCount 的突发，之后匀速放行
+   * <p>ARGV: limitCount, 窗口(毫秒)</p>
+   */
+  private String buildTokenBucketLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    appendNow(lua);
+    lua.append("\nlocal key = KEYS[1];");
+    lua.append("\nlocal limit = tonumber(ARGV[1]);");
+    lua.append("\nlocal period = tonumber(ARGV[2]);");
+    lua.append("\nlocal interval = period / limit;");
+    lua.append("\nlocal tat = tonumber(redis.call('get', key) or '0');");
+    lua.append("\nif tat < now then");
+    lua.append("\n  tat = now;");
+    lua.append("\nend");
+    lua.append("\nlocal newTat = tat + interval;");
+    lua.append("\nif newTat - now > period then");
+    lua.append("\n  return {0, 0, math.ceil(newTat - now - period)};");
+    lua.append("\nend");
+    lua.append("\nredis.call('set', key, string.format('%.3f', newTat), 'PX', math.ceil(newTat - now));");
+    lua.append("\nreturn {1, math.floor((period - (newTat - now)) / interval), 0};");
+
+    return lua.toString();
+  }
+
+  /**
+   * 多维度: 先按各自的算法检查所有维度，全部通过后才逐个计数，任一维度超出时不写入任何计数
+   * <p>KEYS: 各维度的复合Key；ARGV: 本次访问的唯一标识，之后每个维度依次为 算法, limitCount, 窗口(毫秒)</p>
+   * <p>返回 {1放行/0拒绝, 各维度剩余次数的最小值, 拒绝维度的重试等待毫秒}</p>
+   */
+  private String buildMultiLuaScript() {
+    StringBuilder lua = new StringBuilder();
+    appendNow(lua);
+    lua.append("\nlocal member = ARGV[1];");
+    lua.append("\nlocal state = {};");
+    lua.append("\nlocal remaining = -1;");
+    lua.append("\nfor i, key in ipairs(KEYS) do");
+    lua.append("\n  local algorithm = ARGV[i * 3 - 1];");
+    lua.append("\n  local limit = tonumber(ARGV[i * 3]);");
+    lua.append("\n  local period = tonumber(ARGV[i * 3 + 1]);");
+    lua.append("\n  local left;");
+    lua.append("\n  if algorithm == 'slidingLog' then");
+    lua.append("\n    redis.call('zremrangebyscore', key, '-inf', now - period);");
+    lua.append("\n    local count = redis.call('zcard', key);");
+    lua.append("\n    if count >= limit then");
+    lua.append("\n      local oldest = redis.call('zrange', key, 0, 0, 'withscores');");
+    lua.append("\n      return {0, 0, tonumber(oldest[2]) + period - now};");
+    lua.append("\n    end");
+    lua.append("\n    left = limit - count - 1;");
+    lua.append("\n  elseif algorithm == 'slidingWindow' then");
+    lua.append("\n    local window = math.floor(now / period);");
+    lua.append("\n    local elapsed = now - window * period;");
+    lua.append("\n    local current = tonumber(redis.call('hget', key, window) or '0');");
+    lua.append("\n    local previous = tonumber(redis.call('hget', key, window - 1) or '0');");
+    lua.append("\n    local estimate = previous * (period - elapsed) / period + current;");
+    lua.append("\n    if estimate >= limit then");
+    lua.append("\n      local retry = period - elapsed;");
+    lua.append("\n      if current < limit then");
+    lua.append("\n        retry = period * (1 - (limit - current) / previous) - elapsed;");
+    lua.append("\n      end");
+    lua.append("\n      return {0, 0, math.max(1, math.ceil(retry))};");
+    lua.append("\n    end");
+    lua.append("\n    state[i] = {window, current};");
+    lua.append("\n    left = math.max(0, math.floor(limit - estimate - 1));");
+    lua.append("\n  elseif algorithm == 'tokenBucket' then");
+    lua.append("\n    local tat = tonumber(redis.call('get', key) or '0');");
+    lua.append("\n    if tat < now then");
+    lua.append("\n      tat = now;");
+    lua.append("\n    end");
+    lua.append("\n    local newTat = tat + period / limit;");
+    lua.append("\n    if newTat - now > period then");
+    lua.append("\n      return {0, 0, math.ceil(newTat - now - period)};");
+    lua.append("\n    end");
+    lua.append("\n    state[i] = newTat;");
+    lua.append("\n    left = math.floor((period - (newTat - now)) / (period / limit));");
+    lua.append("\n  else");
+    lua.append("\n    local count = tonumber(redis.call('get', key) or '0');");
+    lua.append("\n    if count >= limit then");
+    lua.append("\n      return {0, 0, redis.call('pttl', key)};");
+    lua.append("\n    end");
+    lua.append("\n    left = limit - count - 1;");
+    lua.append("\n  end");
+    lua.append("\n  if remaining < 0 or left < remaining then");
+    lua.append("\n    remaining = left;");
+    lua.append("\n  end");
+    lua.append("\nend");
+    lua.append("\nfor i, key in ipairs(KEYS) do");
+    lua.append("\n  local algorithm = ARGV[i * 3 - 1];");
+    lua.append("\n  local period = tonumber(ARGV[i * 3 + 1]);");
+    lua.append("\n  if algorithm == 'slidingLog' then");
+    lua.append("\n    redis.call('zadd', key, now, member .. ':' .. i);");
+    lua.append("\n    redis.call('pexpire', key, period);");
+    lua.append("\n  elseif algorithm == 'slidingWindow' then");
+    lua.append("\n    local window = state[i][1];");
+    lua.append("\n    if state[i][2] == 0 then");
+    lua.append("\n      for _, field in ipairs(redis.call('hkeys', key)) do");
+    lua.append("\n        if tonumber(field) < window - 1 then");
+    lua.append("\n          redis.call('hdel', key, field);");
+    lua.append("\n        end");
+    lua.append("\n      end");
+    lua.append("\n    end");
+    lua.append("\n    redis.call('hincrby', key, window, 1);");
+    lua.append("\n    redis.call('pexpire', key, period * 2);");
+    lua.append("\n  elseif algorithm == 'tokenBucket' then");
+    lua.append("\n    redis.call('set', key, string.format('%.3f', state[i]), 'PX', math.ceil(state[i] - now));");
+    lua.append("\n  else");
+    lua.append("\n    if redis.call('incr', key) == 1 then");
+    lua.append("\n      redis.call('pexpire', key, period);");
+    lua.append("\n    end");
+    lua.append("\n  end");
+    lua.append("\nend");
+    lua.append("\nreturn {1, remaining, 0};");
+
+    return lua.toString();
+  }
+
+  protected StringRedisTemplate getRedisTemplate() {
+    return redisHandler.getRedisTemplate();
+  }
+
   @Override
   public boolean tryAccess(String name, String key, int limitPeriod, int limitCount) {
     Assert.hasText(name, "@Limit parameter [ name ] is null or empty");
     Assert.hasText(key, "@Limit parameter [ key ] is null or empty");
-    String compositeKey = KeyUtil.getCompositeKey(limitProperties.getPrefix(), name, key);
+    String compositeKey = KeyUtil
+      .getCompositeKey(limitProperties.getPrefix(), name, key, limitProperties.getHashTag());
     return tryAccess(compositeKey, limitPeriod, limitCount);
   }
 
   @Override
   public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount) {
+    return tryAcquireFixedWindow(compositeKey, limitPeriod, limitCount).isAllowed();
+  }
+
+  /**
+   * 固定窗口访问，拒绝时以窗口剩余时间作为重试等待时间
+   *
+   * @param compositeKey 资源复合Key
+   * @param limitPeriod 给定的时间段(单位秒)
+   * @param limitCount 最多的访问限制次数
+   * @return LimitResult
+   */
+  protected LimitResult tryAcquireFixedWindow(String compositeKey, int limitPeriod,
+    int limitCount) {
+    Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    List<String> keys = new ArrayList<String>();
+    keys.add(compositeKey);
+    StringRedisTemplate redisTemplate = redisHandler.getRedisTemplate();
+    List<Object> result = redisTemplate
+      .execute(redisScript, keys, limitCount + "", limitPeriod + "");
+    long count = ((Number) result.get(0)).longValue();
+    long ttl = ((Number) result.get(1)).longValue();
+    if (count <= limitCount) {
+      return new LimitResult(true, limitCount - count, 0L);
+    }
+
+    return new LimitResult(false, 0L, ttl > 0 ? ttl : LimitResult.UNKNOWN);
+  }
+
+  @Override
+  public boolean tryAccess(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    return tryAcquire(compositeKey, limitPeriod, limitCount, algorithm).isAllowed();
+  }
+
+  @Override
+  public LimitResult tryAcquire(String compositeKey, int limitPeriod, int limitCount,
+    LimitAlgorithmEnum algorithm) {
+    RedisScript<List<Object>> script = algorithmScriptMap.get(algorithm);
+    if (script == null) {
+      return tryAcquireFixedWindow(compositeKey, limitPeriod, limitCount);
+    }
+
     Assert.hasText(compositeKey, "@Limit parameter [ composite key ] is null or empty");
+    Assert.isTrue(limitPeriod > 0 && limitCount > 0,
+      "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
     List<String> keys = new ArrayList<String>();
     keys.add(compositeKey);
+    String periodMillis = String.valueOf(limitPeriod * 1000L);
+    StringRedisTemplate redisTemplate = redisHandler.getRedisTemplate();
+    List<Object> result;
+    if (algorithm == LimitAlgorithmEnum.SLIDING_LOG) {
+      // 同一毫秒内的多次访问需要不同的成员
+      String member = Long.toHexString(ThreadLocalRandom.current().nextLong());
+      result = redisTemplate.execute(script, keys, limitCount + "", periodMillis, member);
+    } else {
+      result = redisTemplate.execute(script, keys, limitCount + "", periodMillis);
+    }
+
+    return toLimitResult(result);
+  }
+
+  @Override
+  public boolean tryAccess(List<LimitDimension> dimensions) {
+    return tryAcquire(dimensions).isAllowed();
+  }
+
+  /**
+   * 多维度访问，一次脚本调用完成；所有Key需在同一个 Redis 节点上
+   */
+  @Override
+  public LimitResult tryAcquire(List<LimitDimension> dimensions) {
+    List<String> keys = new ArrayList<String>(dimensions.size());
+    List<String> args = new ArrayList<String>(dimensions.size() * 3 + 1);
+    args.add(Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    for (LimitDimension dimension : dimensions) {
+      Assert.hasText(dimension.getCompositeKey(),
+        "@Limit parameter [ composite key ] is null or empty");
+      Assert.isTrue(dimension.getLimitPeriod() > 0 && dimension.getLimitCount() > 0,
+        "@Limit parameter [ limitPeriod ] and [ limitCount ] must be greater than 0");
+      keys.add(dimension.getCompositeKey());
+      args.add(dimension.getAlgorithm().getValue());
+      args.add(String.valueOf(dimension.getLimitCount()));
+      args.add(String.valueOf(dimension.getLimitPeriod() * 1000L));
+    }
+
     StringRedisTemplate redisTemplate = redisHandler.getRedisTemplate();
-    Number count = redisTemplate.execute(redisScript, keys, limitCount + "", limitPeriod + "");
-    return count.intValue() <= limitCount;
+    return toLimitResult(redisTemplate.execute(multiScript, keys, args.toArray()));
+  }
+
+  /**
+   * 脚本返回 {1放行/0拒绝, 剩余次数, 重试等待毫秒}
+   */
+  private static LimitResult toLimitResult(List<Object> result) {
+    boolean allowed = ((Number) result.get(0)).intValue() == 1;
+    long remaining = ((Number) result.get(1)).longValue();
+    long retryAfterMillis = ((Number) result.get(2)).longValue();
+    if (!allowed && retryAfterMillis <= 0) {
+      retryAfterMillis = LimitResult.UNKNOWN;
+    }
+
+    return new LimitResult(allowed, remaining < 0 ? LimitResult.UNKNOWN : remaining,
+      retryAfterMillis);
   }
 }
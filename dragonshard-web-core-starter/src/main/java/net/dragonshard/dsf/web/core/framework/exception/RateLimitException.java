@@ -0,0 +1,73 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package net.dragonshard.dsf.web.core.framework.exception;
+
+/**
+ * 限流异常
+ * <p>携带剩余次数与建议的重试等待时间，由 {@link net.dragonshard.dsf.web.core.handler.WebHandlerExceptionResolver}
+ * 输出为 X-RateLimit-Remaining 与 Retry-After 响应头；未知时为 -1，不输出对应的响应头。
+ * 放行时的响应头由限流器通过 {@link net.dragonshard.dsf.web.core.framework.util.RateLimitUtils} 输出</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+public class RateLimitException extends RuntimeException {
+
+  private static final long serialVersionUID = 4617260431875217635L;
+
+  /**
+   * 剩余次数
+   */
+  private final long remaining;
+  /**
+   * 建议的重试等待时间(毫秒)
+   */
+  private final long retryAfterMillis;
+
+  public RateLimitException() {
+    this(-1L, -1L);
+  }
+
+  public RateLimitException(long remaining, long retryAfterMillis) {
+    super();
+    this.remaining = remaining;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  public RateLimitException(String message) {
+    super(message);
+    this.remaining = -1L;
+    this.retryAfterMillis = -1L;
+  }
+
+  public RateLimitException(String message, Throwable cause) {
+    super(message, cause);
+    this.remaining = -1L;
+    this.retryAfterMillis = -1L;
+  }
+
+  public RateLimitException(Throwable cause) {
+    super(cause);
+    this.remaining = -1L;
+    this.retryAfterMillis = -1L;
+  }
+
+  public long getRemaining() {
+    return remaining;
+  }
+
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
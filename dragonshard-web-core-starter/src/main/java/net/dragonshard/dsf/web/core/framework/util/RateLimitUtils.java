@@ -0,0 +1,69 @@
+/*
+ *   Copyright 1999-2018 dragonshard.net.
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package net.dragonshard.dsf.web.core.framework.util;
+
+import javax.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 限流响应头工具类
+ * <p>输出 X-RateLimit-Remaining 与 Retry-After 响应头，放行与拒绝时都可输出；值小于0表示未知，不输出</p>
+ *
+ * @author mayee
+ * @version v1.0
+ **/
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RateLimitUtils {
+
+  public static final String HEADER_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+  public static final String HEADER_RETRY_AFTER = "Retry-After";
+
+  /**
+   * 向当前请求的响应输出限流响应头，不在 Spring MVC 请求中(如异步线程、非 web 调用)时忽略
+   *
+   * @param remaining 剩余次数
+   * @param retryAfterMillis 建议的重试等待时间(毫秒)
+   */
+  public static void setHeaders(long remaining, long retryAfterMillis) {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (!(requestAttributes instanceof ServletRequestAttributes)) {
+      return;
+    }
+
+    HttpServletResponse response = ((ServletRequestAttributes) requestAttributes).getResponse();
+    if (response != null && !response.isCommitted()) {
+      setHeaders(response, remaining, retryAfterMillis);
+    }
+  }
+
+  /**
+   * 输出限流响应头，Retry-After 按秒向上取整
+   *
+   * @param response HttpServletResponse
+   * @param remaining 剩余次数
+   * @param retryAfterMillis 建议的重试等待时间(毫秒)
+   */
+  public static void setHeaders(HttpServletResponse response, long remaining,
+    long retryAfterMillis) {
+    if (remaining >= 0) {
+      response.setHeader(HEADER_RATE_LIMIT_REMAINING, String.valueOf(remaining));
+    }
+    if (retryAfterMillis > 0) {
+      response.setHeader(HEADER_RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000));
+    }
+  }
+}
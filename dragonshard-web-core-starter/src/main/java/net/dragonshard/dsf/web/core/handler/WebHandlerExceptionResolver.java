@@ -20,6 +20,8 @@ import javax.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import net.dragonshard.dsf.web.core.enums.DsfErrorCodeEnum;
 import net.dragonshard.dsf.web.core.framework.exception.BizException;
+import net.dragonshard.dsf.web.core.framework.exception.RateLimitException;
+import net.dragonshard.dsf.web.core.framework.util.RateLimitUtils;
 import net.dragonshard.dsf.web.core.framework.util.ResponseUtils;
 import org.springframework.beans.ConversionNotSupportedException;
 import org.springframework.beans.TypeMismatchException;
@@ -66,6 +68,7 @@ import org.springframework.web.servlet.handler.AbstractHandlerExceptionResolver;
  * @see #handleMissingServletRequestParameter
  * @see #handleMissingServletRequestPartException
  * @see #handleBindException
+ * @see #handleRateLimit
  * @see org.springframework.web.servlet.mvc.support.DefaultHandlerExceptionResolver
  */
 @Slf4j
@@ -82,6 +85,8 @@ public class WebHandlerExceptionResolver extends AbstractHandlerExceptionResolve
     try {
       if (ex instanceof BizException) {
         handleBiz((BizException) ex, request, response);
+      } else if (ex instanceof RateLimitException) {
+        handleRateLimit((RateLimitException) ex, request, response);
       } else if (ex instanceof HttpRequestMethodNotSupportedException) {
         handleHttpRequestMethodNotSupported((HttpRequestMethodNotSupportedException) ex, request,
           response);
@@ -150,6 +155,22 @@ public class WebHandlerExceptionResolver extends AbstractHandlerExceptionResolve
 
   }
 
+  /**
+   * Handle the case where the request reaches the rate limit.
+   * <p>
+   * Sends an HTTP 503 error, sets the "X-RateLimit-Remaining" header and the "Retry-After" header
+   * (in seconds, rounded up) when the limiter knows them.
+   *
+   * @param ex the RateLimitException to be handled
+   * @param request current HTTP request
+   * @param response current HTTP response
+   */
+  private void handleRateLimit(RateLimitException ex,
+    HttpServletRequest request, HttpServletResponse response) {
+    RateLimitUtils.setHeaders(response, ex.getRemaining(), ex.getRetryAfterMillis());
+    ResponseUtils.sendFail(request, response, DsfErrorCodeEnum.REQUEST_REACH_MAX_LIMIT.convert());
+  }
+
   /**
    * Handle the case where no request handler method was found for the particular HTTP request
    * method.